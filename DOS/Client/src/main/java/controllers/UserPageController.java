@@ -1,11 +1,13 @@
 package controllers;
 
+import domain.dto.ChangeSet;
 import domain.dto.DrugDTO;
 import domain.dto.OrderDTO;
 import domain.models.Order;
 import domain.models.User;
 import domain.models.UserType;
 import domain.validation.ValidationException;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.scene.control.*;
@@ -13,15 +15,26 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.input.MouseButton;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.SVGPath;
+import repository.InsufficientStockException;
+import service.AsyncDOSService;
 import service.IClientObserver;
 import service.IDOSService;
 import utils.AlertMessage;
+import utils.Constants;
 
 import java.io.Serializable;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.Date;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -51,6 +64,7 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
 
     public AnchorPane hospitalLayout;
         public Label lbl_availableDrugs;
+        public TextField tf_searchDrugs;
             public TableView<DrugDTO> tv_hospitalDrugs;
                 public TableColumn<DrugDTO, Boolean> tc_hospitalDrugsCheckBox;
                 public TableColumn<DrugDTO, String> tc_hospitalDrugsName;
@@ -87,6 +101,7 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
         public Rectangle btn_completeOrder;
 
     private IDOSService service;
+    private transient AsyncDOSService asyncService;
     private Stage stage;
     private User user;
     private Integer orderId;
@@ -98,6 +113,8 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
     private transient final ObservableList<DrugDTO> hospitalDrugs = FXCollections.observableArrayList();
     private transient final ObservableList<OrderDTO> hospitalOrders = FXCollections.observableArrayList();
     private transient final ObservableList<OrderDTO> pharmacyOrders = FXCollections.observableArrayList();
+    private transient final AtomicInteger drugsRequest = new AtomicInteger();
+    private transient long changesVersion;
 
     private static final Logger _logger = LogManager.getLogger();
 
@@ -107,6 +124,7 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
         _logger.info("Initializing 'User page controller'.");
 
         this.service = service;
+        this.asyncService = new AsyncDOSService(service, Constants.DEFAULT_ASYNC_THREADS);
         this.stage = stage;
         this.user = user;
         initComponents();
@@ -129,6 +147,7 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
             _logger.traceEntry("Logging user out.");
 
             service.logoutUser(user.getUserName());
+            asyncService.close();
 
             _logger.traceExit("User logged out.");
         });
@@ -151,6 +170,8 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
         tf_updateEmail.textProperty().addListener(tx -> updateConfirmUpdateUserButtonStatus());
         updateConfirmUpdateUserButtonStatus();
 
+        tf_searchDrugs.textProperty().addListener(tx -> updateHospitalDrugs());
+
         ObservableList<String> userTypes = FXCollections.observableArrayList();
         userTypes.add(UserType.Admin.toString());
         userTypes.add(UserType.PharmacyStaff.toString());
@@ -166,23 +187,122 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
         updateTables();
     }
 
+    /**
+     * Requests the drugs and orders changed since the last update and applies them to the tables.
+     * The first update gets every drug and order, the next ones only what changed since.
+     */
     private void updateTables() {
         _logger.traceEntry("Updating tables.");
 
-        var drugs = service.getAvailableDrugs();
+        asyncService.getChangesSince(changesVersion)
+                .thenAccept(changes -> Platform.runLater(() -> applyChanges(changes)))
+                .exceptionally(this::logFailure);
+
+        _logger.traceExit("Requested table updates.");
+    }
+
+    /**
+     * Applies a {@link ChangeSet} to the tables, unless another one was applied since it was requested.
+     * While a search is shown, changed drugs run the search again instead.
+     */
+    private void applyChanges(ChangeSet changes) {
+        if (changes.getSince() != changesVersion) {
+            return;
+        }
+
+        _logger.info("Received changes up to version {}.", changes.getVersion());
+
+        changesVersion = changes.getVersion();
+        mergeChanges(hospitalOrders, OrderDTO::getId, changes.getChangedOrders(), changes.getDeletedOrderIds(), o -> true);
+        mergeChanges(pharmacyOrders, OrderDTO::getId, changes.getChangedOrders(), changes.getDeletedOrderIds(), o -> true);
+        if (changes.getChangedDrugs().isEmpty() && changes.getDeletedDrugIds().isEmpty()) {
+            return;
+        }
+
+        var query = tf_searchDrugs.getText();
+        if (query == null || query.isBlank()) {
+            mergeChanges(hospitalDrugs, DrugDTO::getId, changes.getChangedDrugs(), changes.getDeletedDrugIds(), d -> d.getInStock() > 0);
+        } else {
+            updateHospitalDrugs();
+        }
+    }
+
+    /**
+     * Replaces the changed items in place and appends the new ones,
+     * then removes the deleted items and the ones that should no longer be shown.
+     */
+    private static <T> void mergeChanges(ObservableList<T> items, Function<T, Integer> getId, List<T> changed, List<Integer> deleted, Predicate<T> shown) {
+        var positions = new HashMap<Integer, Integer>();
+        for (var i = 0; i < items.size(); i++) {
+            positions.put(getId.apply(items.get(i)), i);
+        }
+
+        for (var item : changed) {
+            var position = positions.get(getId.apply(item));
+            if (position != null) {
+                items.set(position, item);
+            } else if (shown.test(item)) {
+                positions.put(getId.apply(item), items.size());
+                items.add(item);
+            }
+        }
+
+        var removed = new HashSet<>(deleted);
+        items.removeIf(item -> removed.contains(getId.apply(item)) || !shown.test(item));
+    }
+
+    /**
+     * Requests the available drugs matching the search field, dropping the response if a newer request was made since.
+     */
+    private void updateHospitalDrugs() {
+        var query = tf_searchDrugs.getText();
+        var request = drugsRequest.incrementAndGet();
+        var drugs = query == null || query.isBlank()
+                ? asyncService.getAvailableDrugs()
+                : asyncService.searchDrugs(query, Constants.DRUG_SEARCH_LIMIT);
+
+        drugs.thenAccept(received -> Platform.runLater(() -> {
+                    if (request == drugsRequest.get()) {
+                        _logger.info("Received available drugs.");
+
+                        hospitalDrugs.setAll(received);
+                    }
+                }))
+                .exceptionally(this::logFailure);
+    }
+
+    @Override
+    public void ordersPlaced(List<Integer> orderIds) {
+        _logger.info("Orders placed: {}.", orderIds);
+
+        Platform.runLater(this::updateTables);
+    }
+
+    @Override
+    public void ordersCompleted(List<Integer> orderIds) {
+        _logger.info("Orders completed: {}.", orderIds);
 
-        _logger.info("Received available drugs.");
+        Platform.runLater(this::updateTables);
+    }
 
-        hospitalDrugs.setAll(drugs);
+    @Override
+    public void ordersCancelled(List<Integer> orderIds) {
+        _logger.info("Orders cancelled: {}.", orderIds);
 
-        var orders= service.getOrders();
+        Platform.runLater(this::updateTables);
+    }
 
-        _logger.info("Received orders.");
+    @Override
+    public void stockChanged(List<Integer> drugIds) {
+        _logger.info("Stock changed for drugs: {}.", drugIds);
 
-        hospitalOrders.setAll(orders);
-        pharmacyOrders.setAll(orders);
+        Platform.runLater(this::updateTables);
+    }
 
-        _logger.traceExit("Updated tables.");
+    private Void logFailure(Throwable ex) {
+        _logger.error(ex);
+
+        return null;
     }
 
     private void setupHospitalDrugsTable() {
@@ -280,9 +400,11 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
                 }
 
                 StringBuilder orderDetails = new StringBuilder();
-                var drugs = service.getOrderById(selectedOrder.getId());
-                for (var d : drugs.getDrugs().keySet()) {
-                    orderDetails.append(drugs.getDrugs().get(d)).append(" x Drug with id: ").append(d).append("\n");
+                var order = service.getOrderById(selectedOrder.getId());
+                var drugs = service.getDrugsByIds(new ArrayList<>(order.getDrugs().keySet()));
+                for (var d : order.getDrugs().keySet()) {
+                    var drug = drugs.get(d);
+                    orderDetails.append(order.getDrugs().get(d)).append(" x ").append(drug != null ? drug.getName() : "Drug with id: " + d).append("\n");
                 }
                 tx_drugs.setText(orderDetails.toString());
                 orderId = selectedOrder.getId();
@@ -451,12 +573,22 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
                 .filter(DrugDTO::getSelected)
                 .forEach(d -> order.addDrug(d.getId(), d.getToOrder()));
 
-        var result = service.placeOrder(order);
+        try {
+            var result = service.placeOrder(order);
 
-        if (result) {
-            AlertMessage.showAlert(Alert.AlertType.INFORMATION, "Order placed.", "Order placed.", stage);
-        } else {
-            AlertMessage.showAlert(Alert.AlertType.ERROR, "Order not placed.", "Order not placed.", stage);
+            if (result) {
+                AlertMessage.showAlert(Alert.AlertType.INFORMATION, "Order placed.", "Order placed.", stage);
+            } else {
+                AlertMessage.showAlert(Alert.AlertType.ERROR, "Order not placed.", "Order not placed.", stage);
+            }
+        } catch (InsufficientStockException ex) {
+            _logger.warn(ex.getMessage());
+
+            var shortages = hospitalDrugs.stream()
+                    .filter(d -> ex.getShortages().containsKey(d.getId()))
+                    .map(d -> d.getName() + ": " + ex.getShortages().get(d.getId()) + " missing")
+                    .collect(Collectors.joining("\n"));
+            AlertMessage.showAlert(Alert.AlertType.ERROR, "Order not placed.", "Not enough stock.\n" + shortages, stage);
         }
 
         updateTables();
@@ -464,6 +596,7 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
 
     public void hospitalViewDrugs() {
         tv_hospitalDrugs.setVisible(true);
+        tf_searchDrugs.setVisible(true);
         tv_hospitalOrders.setVisible(false);
         lbl_availableDrugs.setUnderline(true);
         lbl_drugOrders.setUnderline(false);
@@ -471,6 +604,7 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
 
     public void hospitalViewOrders() {
         tv_hospitalDrugs.setVisible(false);
+        tf_searchDrugs.setVisible(false);
         tv_hospitalOrders.setVisible(true);
         lbl_availableDrugs.setUnderline(false);
         lbl_drugOrders.setUnderline(true);
@@ -519,8 +653,9 @@ public class UserPageController extends UnicastRemoteObject implements IClientOb
         user.setEmail(tf_updateEmail.getText());
 
         try {
-            var response = service.updateUser(user);
-            if (response) {
+            var updatedUser = service.updateUser(user);
+            if (updatedUser != null) {
+                user.setVersion(updatedUser.getVersion());
                 AlertMessage.showAlert(Alert.AlertType.INFORMATION, "User updated", "User updated.", stage);
                 handleCancelUpdateUser();
             } else {
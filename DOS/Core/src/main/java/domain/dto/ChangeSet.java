@@ -0,0 +1,74 @@
+package domain.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class ChangeSet implements Serializable {
+    private Long since;
+    private Long version;
+    private List<DrugDTO> changedDrugs;
+    private List<Integer> deletedDrugIds;
+    private List<OrderDTO> changedOrders;
+    private List<Integer> deletedOrderIds;
+
+    public ChangeSet(Long since, Long version, List<DrugDTO> changedDrugs, List<Integer> deletedDrugIds, List<OrderDTO> changedOrders, List<Integer> deletedOrderIds) {
+        this.since = since;
+        this.version = version;
+        this.changedDrugs = changedDrugs;
+        this.deletedDrugIds = deletedDrugIds;
+        this.changedOrders = changedOrders;
+        this.deletedOrderIds = deletedOrderIds;
+    }
+
+    public Long getSince() {
+        return since;
+    }
+
+    public void setSince(Long since) {
+        this.since = since;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public List<DrugDTO> getChangedDrugs() {
+        return changedDrugs;
+    }
+
+    public void setChangedDrugs(List<DrugDTO> changedDrugs) {
+        this.changedDrugs = changedDrugs;
+    }
+
+    public List<Integer> getDeletedDrugIds() {
+        return deletedDrugIds;
+    }
+
+    public void setDeletedDrugIds(List<Integer> deletedDrugIds) {
+        this.deletedDrugIds = deletedDrugIds;
+    }
+
+    public List<OrderDTO> getChangedOrders() {
+        return changedOrders;
+    }
+
+    public void setChangedOrders(List<OrderDTO> changedOrders) {
+        this.changedOrders = changedOrders;
+    }
+
+    public List<Integer> getDeletedOrderIds() {
+        return deletedOrderIds;
+    }
+
+    public void setDeletedOrderIds(List<Integer> deletedOrderIds) {
+        this.deletedOrderIds = deletedOrderIds;
+    }
+
+    public boolean isEmpty() {
+        return changedDrugs.isEmpty() && deletedDrugIds.isEmpty() && changedOrders.isEmpty() && deletedOrderIds.isEmpty();
+    }
+}
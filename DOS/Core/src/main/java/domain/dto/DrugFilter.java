@@ -0,0 +1,38 @@
+package domain.dto;
+
+import java.io.Serializable;
+
+/**
+ * Criteria for selecting {@code Drug}s on the server.
+ */
+public class DrugFilter implements Serializable {
+    private Boolean availableOnly;
+
+    public Boolean getAvailableOnly() {
+        return availableOnly;
+    }
+
+    public void setAvailableOnly(Boolean availableOnly) {
+        this.availableOnly = availableOnly;
+    }
+
+    public static class Builder {
+        private Boolean _availableOnly;
+
+        public Builder() {
+            _availableOnly = false;
+        }
+
+        public Builder withAvailableOnly(Boolean availableOnly) {
+            _availableOnly = availableOnly;
+            return this;
+        }
+
+        public DrugFilter build() {
+            var filter = new DrugFilter();
+            filter.setAvailableOnly(_availableOnly);
+
+            return filter;
+        }
+    }
+}
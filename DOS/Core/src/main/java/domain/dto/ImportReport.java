@@ -0,0 +1,64 @@
+package domain.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class ImportReport implements Serializable {
+    private Integer rowsRead;
+    private Integer rowsImported;
+    private Integer rowsRejected;
+    private Long elapsedMillis;
+    private List<String> errors;
+
+    public ImportReport(Integer rowsRead, Integer rowsImported, Integer rowsRejected, Long elapsedMillis, List<String> errors) {
+        this.rowsRead = rowsRead;
+        this.rowsImported = rowsImported;
+        this.rowsRejected = rowsRejected;
+        this.elapsedMillis = elapsedMillis;
+        this.errors = errors;
+    }
+
+    public Integer getRowsRead() {
+        return rowsRead;
+    }
+
+    public void setRowsRead(Integer rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    public Integer getRowsImported() {
+        return rowsImported;
+    }
+
+    public void setRowsImported(Integer rowsImported) {
+        this.rowsImported = rowsImported;
+    }
+
+    public Integer getRowsRejected() {
+        return rowsRejected;
+    }
+
+    public void setRowsRejected(Integer rowsRejected) {
+        this.rowsRejected = rowsRejected;
+    }
+
+    public Long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(Long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsImported * 1000.0 / Math.max(1L, elapsedMillis);
+    }
+}
@@ -0,0 +1,109 @@
+package domain.dto;
+
+import java.io.Serializable;
+import java.sql.Date;
+
+/**
+ * Criteria for selecting {@code Order}s on the server.
+ * Criteria left {@code null} do not restrict the selection.
+ */
+public class OrderFilter implements Serializable {
+    private Boolean delivered;
+    private Integer orderedBy;
+    private Date orderedFrom;
+    private Date orderedTo;
+    private Boolean includeArchived;
+
+    public Boolean getDelivered() {
+        return delivered;
+    }
+
+    public void setDelivered(Boolean delivered) {
+        this.delivered = delivered;
+    }
+
+    public Integer getOrderedBy() {
+        return orderedBy;
+    }
+
+    public void setOrderedBy(Integer orderedBy) {
+        this.orderedBy = orderedBy;
+    }
+
+    public Date getOrderedFrom() {
+        return orderedFrom;
+    }
+
+    public void setOrderedFrom(Date orderedFrom) {
+        this.orderedFrom = orderedFrom;
+    }
+
+    public Date getOrderedTo() {
+        return orderedTo;
+    }
+
+    public void setOrderedTo(Date orderedTo) {
+        this.orderedTo = orderedTo;
+    }
+
+    public Boolean getIncludeArchived() {
+        return includeArchived;
+    }
+
+    public void setIncludeArchived(Boolean includeArchived) {
+        this.includeArchived = includeArchived;
+    }
+
+    public static class Builder {
+        private Boolean _delivered;
+        private Integer _orderedBy;
+        private Date _orderedFrom;
+        private Date _orderedTo;
+        private Boolean _includeArchived;
+
+        public Builder withDelivered(Boolean delivered) {
+            _delivered = delivered;
+            return this;
+        }
+
+        public Builder withOrderedBy(Integer orderedBy) {
+            _orderedBy = orderedBy;
+            return this;
+        }
+
+        /**
+         * @param orderedFrom the earliest order date to include.
+         */
+        public Builder withOrderedFrom(Date orderedFrom) {
+            _orderedFrom = orderedFrom;
+            return this;
+        }
+
+        /**
+         * @param orderedTo the order date before which orders are included.
+         */
+        public Builder withOrderedTo(Date orderedTo) {
+            _orderedTo = orderedTo;
+            return this;
+        }
+
+        /**
+         * @param includeArchived whether orders moved to the archive database are selected as well.
+         */
+        public Builder withIncludeArchived(Boolean includeArchived) {
+            _includeArchived = includeArchived;
+            return this;
+        }
+
+        public OrderFilter build() {
+            var filter = new OrderFilter();
+            filter.setDelivered(_delivered);
+            filter.setOrderedBy(_orderedBy);
+            filter.setOrderedFrom(_orderedFrom);
+            filter.setOrderedTo(_orderedTo);
+            filter.setIncludeArchived(_includeArchived);
+
+            return filter;
+        }
+    }
+}
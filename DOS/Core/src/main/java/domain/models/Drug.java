@@ -59,12 +59,14 @@ public class Drug extends Entity<Integer> {
 
     public static class Builder {
         private Integer _id;
+        private Integer _version;
         private String _name;
         private String _description;
         private Integer _inStock;
 
         public Builder() {
             _id = 0;
+            _version = 0;
             _name = "drug-name";
             _description = "description";
             _inStock = 26;
@@ -72,6 +74,7 @@ public class Drug extends Entity<Integer> {
 
         public Builder from(Drug other) {
             _id = other.getId();
+            _version = other.getVersion();
             _name = other.getName();
             _description = other.getDescription();
             _inStock = other.getInStock();
@@ -83,6 +86,11 @@ public class Drug extends Entity<Integer> {
             return this;
         }
 
+        public Builder withVersion(Integer version) {
+            _version = version;
+            return this;
+        }
+
         public Builder withName(String name) {
             _name = name;
             return this;
@@ -101,6 +109,7 @@ public class Drug extends Entity<Integer> {
         public Drug build() {
             var drug = new Drug();
             drug.setId(_id);
+            drug.setVersion(_version);
             drug.setName(_name);
             drug.setDescription(_description);
             drug.setInStock(_inStock);
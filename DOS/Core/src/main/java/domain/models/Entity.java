@@ -4,6 +4,7 @@ import java.io.Serializable;
 
 public abstract class Entity <ID> implements Serializable {
     protected ID id;
+    protected Integer version = 0;
 
     public Entity() {}
 
@@ -18,4 +19,16 @@ public abstract class Entity <ID> implements Serializable {
     public void setId(ID id) {
         this.id = id;
     }
+
+    /**
+     * @return the number of times the stored {@link Entity} was updated when it was read,
+     *         used to detect concurrent updates.
+     */
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
 }
@@ -98,6 +98,7 @@ public class Order extends Entity<Integer> {
 
     public static class Builder {
         private Integer _id;
+        private Integer _version;
         private Integer _orderedBy;
         private Boolean _delivered;
         private Date _orderedAt;
@@ -106,6 +107,7 @@ public class Order extends Entity<Integer> {
 
         public Builder() {
             _id = 0;
+            _version = 0;
             _orderedBy = 0;
             _delivered = true;
             _orderedAt = new Date(System.currentTimeMillis() - 10);
@@ -115,6 +117,7 @@ public class Order extends Entity<Integer> {
 
         public Builder from(Order other) {
             _id = other.getId();
+            _version = other.getVersion();
             _orderedBy = other.getOrderedBy();
             _delivered = other.getDelivered();
             _orderedAt = other.getOrderedAt();
@@ -128,6 +131,11 @@ public class Order extends Entity<Integer> {
             return this;
         }
 
+        public Builder withVersion (Integer version) {
+            _version = version;
+            return this;
+        }
+
         public Builder withOrderedBy (Integer orderedBy) {
             _orderedBy = orderedBy;
             return this;
@@ -156,6 +164,7 @@ public class Order extends Entity<Integer> {
         public Order build() {
             var order = new Order();
             order.setId(_id);
+            order.setVersion(_version);
             order.setOrderedBy(_orderedBy);
             order.setDelivered(_delivered);
             order.setOrderedAt(_orderedAt);
@@ -116,6 +116,7 @@ public class User extends Entity<Integer> {
 
     public static class Builder {
         private Integer _id;
+        private Integer _version;
         private String _userName;
         private String _firstName;
         private String _lastName;
@@ -127,6 +128,7 @@ public class User extends Entity<Integer> {
 
         public Builder() {
             _id = 0;
+            _version = 0;
             _userName = "user-name";
             _firstName = "first-name";
             _lastName = "last-name";
@@ -139,6 +141,7 @@ public class User extends Entity<Integer> {
 
         public Builder from(User other) {
             _id = other.getId();
+            _version = other.getVersion();
             _userName = other.getUserName();
             _firstName = other.getFirstName();
             _lastName = other.getLastName();
@@ -155,6 +158,11 @@ public class User extends Entity<Integer> {
             return this;
         }
 
+        public Builder withVersion(Integer version) {
+            _version = version;
+            return this;
+        }
+
         public Builder withUserName(String userName) {
             _userName = userName;
             return this;
@@ -203,6 +211,7 @@ public class User extends Entity<Integer> {
         public User build() {
             var user = new User();
             user.setId(_id);
+            user.setVersion(_version);
             user.setUserName(_userName);
             user.setFirstName(_firstName);
             user.setLastName(_lastName);
@@ -4,19 +4,35 @@ import domain.models.Entity;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.lang.reflect.Field;
+
 /**
  * Base class for all {@link Entity} {@code Validators}.
  * @param <ID> the type of the ID of the object to validate.
  * @param <T> the type of the object to validate.
  */
 public abstract class AbstractValidator<ID, T extends Entity<ID>> implements IValidator<ID, T> {
+    /**
+     * The fields checked for {@code null} values, looked up and made accessible once per validated class.
+     */
+    private static final ClassValue<Field[]> checkedFields = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            var fields = type.getDeclaredFields();
+            for (var f : fields) {
+                f.setAccessible(true);
+            }
+
+            return fields;
+        }
+    };
+
     private static final Logger _logger = LogManager.getLogger();
 
     @Override
     public void validate(T entity) throws ValidationException {
         try {
-            for (var f : entity.getClass().getDeclaredFields()) {
-                f.setAccessible(true);
+            for (var f : checkedFields.get(entity.getClass())) {
                 if (f.get(entity) == null) {
                     _logger.warn("Some or all of the properties of the entity were null.");
 
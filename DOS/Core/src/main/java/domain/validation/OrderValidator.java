@@ -18,6 +18,11 @@ public class OrderValidator extends AbstractValidator<Integer, Order> {
         if (entity.getOrderedAt().after(new Date(System.currentTimeMillis() + 10))) {
             message += "Order can not pe placed after the current time.\n";
         }
+        for (var line : entity.getDrugs().entrySet()) {
+            if (line.getValue() == null || line.getValue() <= 0) {
+                message += "Order quantity of drug " + line.getKey() + " must be positive.\n";
+            }
+        }
 
         return message;
     }
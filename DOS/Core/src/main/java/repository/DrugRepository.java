@@ -1,19 +1,38 @@
 package repository;
 
+import domain.dto.DrugFilter;
+import domain.dto.ImportReport;
 import domain.models.Drug;
 import domain.validation.DrugValidator;
 import domain.validation.IValidator;
 import domain.validation.ValidationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import utils.Constants;
+import utils.CsvUtils;
+import utils.JdbcStreams;
 import utils.JdbcUtils;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class DrugRepository implements IDrugRepository {
     private final JdbcUtils dbUtils;
@@ -21,11 +40,29 @@ public class DrugRepository implements IDrugRepository {
 
     private static final Logger _logger = LogManager.getLogger();
 
+    // The hot queries, package-private so their query plans are checked against the indexes by TestQueryPlans.
+    static final String SELECT_AVAILABLE_DRUGS = "SELECT * FROM drugs WHERE in_stock > 0;";
+    static final String SELECT_DRUG_BY_ID = "SELECT * FROM drugs WHERE id=?;";
+    static final String SELECT_CHANGE_LOG_VERSION = "SELECT COALESCE(MAX(version), 0) FROM change_log;";
+    static final String SELECT_CHANGED_DRUGS =
+            "SELECT d.* FROM change_log c JOIN drugs d ON d.id = c.entity_id WHERE c.version > ? AND c.version <= ? AND c.entity = 'drug' AND NOT c.deleted ORDER BY c.version;";
+    static final String SELECT_DELETED_DRUG_IDS =
+            "SELECT entity_id FROM change_log WHERE version > ? AND version <= ? AND entity = 'drug' AND deleted ORDER BY version;";
+    static final String UPSERT_DRUG = "INSERT INTO drugs(name, description, in_stock) VALUES (?,?,?) " +
+            "ON CONFLICT(name) DO UPDATE SET description = excluded.description, in_stock = excluded.in_stock, version = version + 1;";
+    static final String UPDATE_DRUG = "UPDATE drugs SET name=?, description=?, in_stock=?, version=version+1 WHERE id=? AND version=?;";
+    static final String DELETE_DRUG = "DELETE FROM drugs WHERE id=?;";
+
     public DrugRepository(String jdbcUrl) {
+        this(JdbcUtils.propertiesFor(jdbcUrl));
+    }
+
+    /**
+     * @param props the database properties, see {@link JdbcUtils} and {@link utils.StorageProfile}.
+     */
+    public DrugRepository(Properties props) {
         _logger.info("Initializing Drug Repository.");
 
-        var props = new Properties();
-        props.setProperty("jdbc.url", jdbcUrl);
         dbUtils = new JdbcUtils(props);
         validator = new DrugValidator();
     }
@@ -35,8 +72,7 @@ public class DrugRepository implements IDrugRepository {
         _logger.traceEntry("Getting all drugs.");
 
         var finalList = new ArrayList<Drug>();
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("SELECT * FROM drugs WHERE in_stock > 0;")) {
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_AVAILABLE_DRUGS)) {
             try (var result = statement.executeQuery()) {
                 while (result.next()) {
                     var drug = generateDrugFromResult(result);
@@ -47,7 +83,7 @@ public class DrugRepository implements IDrugRepository {
         } catch (SQLException | IndexOutOfBoundsException ex) {
             _logger.error(ex);
 
-            return _logger.traceExit(new ArrayList<>());
+            throw _logger.traceExit(new RepositoryException("Available drugs could not be read.", ex));
         }
 
         _logger.traceExit("Retrieved {} drugs.", finalList.size());
@@ -58,8 +94,7 @@ public class DrugRepository implements IDrugRepository {
     public Optional<Drug> getById(Integer id) {
         _logger.traceEntry("Getting Drug with ID: {}.", id);
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("SELECT * FROM drugs WHERE id=?;")) {
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_DRUG_BY_ID)) {
             statement.setInt(1, id);
             try (var result = statement.executeQuery()) {
                 if (!result.next()) {
@@ -79,13 +114,107 @@ public class DrugRepository implements IDrugRepository {
         }
     }
 
+    @Override
+    public Map<Integer, Drug> getByIds(Collection<Integer> ids) {
+        _logger.traceEntry("Getting Drugs with IDs: {}.", ids);
+
+        var found = new LinkedHashMap<Integer, Drug>();
+        var distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+
+        try (var con = dbUtils.getReadOnlyConnection()) {
+            for (var from = 0; from < distinctIds.size(); from += Constants.MAX_IDS_PER_QUERY) {
+                var chunk = distinctIds.subList(from, Math.min(from + Constants.MAX_IDS_PER_QUERY, distinctIds.size()));
+                try (var statement = con.prepareStatement(selectDrugsByIds(chunk.size()))) {
+                    for (var i = 0; i < chunk.size(); i++) {
+                        statement.setInt(i + 1, chunk.get(i));
+                    }
+                    try (var result = statement.executeQuery()) {
+                        while (result.next()) {
+                            var drug = generateDrugFromResult(result);
+                            found.put(drug.getId(), drug);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException | IndexOutOfBoundsException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(new LinkedHashMap<>());
+        }
+
+        _logger.traceExit("Found {} drugs.", found.size());
+        return found;
+    }
+
+    @Override
+    public long getChangeLogVersion() {
+        _logger.traceEntry("Getting change log version.");
+
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_CHANGE_LOG_VERSION)) {
+            try (var result = statement.executeQuery()) {
+                result.next();
+
+                return _logger.traceExit(result.getLong(1));
+            }
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(0L);
+        }
+    }
+
+    @Override
+    public List<Drug> getChangedSince(long version, long upToVersion) {
+        _logger.traceEntry("Getting drugs changed after version {}.", version);
+
+        var changed = new ArrayList<Drug>();
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_CHANGED_DRUGS)) {
+            statement.setLong(1, version);
+            statement.setLong(2, upToVersion);
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    changed.add(generateDrugFromResult(result));
+                }
+            }
+        } catch (SQLException | IndexOutOfBoundsException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(new ArrayList<>());
+        }
+
+        _logger.traceExit("Found {} changed drugs.", changed.size());
+        return changed;
+    }
+
+    @Override
+    public List<Integer> getDeletedSince(long version, long upToVersion) {
+        _logger.traceEntry("Getting drugs deleted after version {}.", version);
+
+        var deleted = new ArrayList<Integer>();
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_DELETED_DRUG_IDS)) {
+            statement.setLong(1, version);
+            statement.setLong(2, upToVersion);
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    deleted.add(result.getInt(1));
+                }
+            }
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(new ArrayList<>());
+        }
+
+        _logger.traceExit("Found {} deleted drugs.", deleted.size());
+        return deleted;
+    }
+
     @Override
     public List<Drug> getAll() {
         _logger.traceEntry("Getting all drugs.");
 
         var finalList = new ArrayList<Drug>();
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("SELECT * FROM drugs;")) {
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement("SELECT * FROM drugs;")) {
             try (var result = statement.executeQuery()) {
                 while (result.next()) {
                     var drug = generateDrugFromResult(result);
@@ -103,6 +232,82 @@ public class DrugRepository implements IDrugRepository {
         return finalList;
     }
 
+    @Override
+    public List<Drug> getPage(Integer afterId, int limit, DrugFilter filter) {
+        _logger.traceEntry("Getting page of Drugs after ID: {}.", afterId);
+
+        var availableOnly = filter != null && Boolean.TRUE.equals(filter.getAvailableOnly());
+        var sql = selectDrugPage(availableOnly);
+
+        var finalList = new ArrayList<Drug>();
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(sql)) {
+            statement.setInt(1, afterId == null ? 0 : afterId);
+            statement.setInt(2, Math.max(0, Math.min(limit, Constants.MAX_PAGE_SIZE)));
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    var drug = generateDrugFromResult(result);
+
+                    finalList.add(drug);
+                }
+            }
+        } catch (SQLException | IndexOutOfBoundsException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(new ArrayList<>());
+        }
+
+        _logger.traceExit("Retrieved {} drugs.", finalList.size());
+        return finalList;
+    }
+
+    @Override
+    public List<Drug> searchDrugs(String query, int limit, DrugFilter filter) {
+        _logger.traceEntry("Searching Drugs for: {}.", query);
+
+        var match = toMatchExpression(query);
+        if (match.isEmpty()) {
+            _logger.warn("No words to search for.");
+
+            return _logger.traceExit(new ArrayList<>());
+        }
+
+        var availableOnly = filter != null && Boolean.TRUE.equals(filter.getAvailableOnly());
+        var sql = selectDrugSearch(availableOnly);
+
+        var finalList = new ArrayList<Drug>();
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(sql)) {
+            statement.setString(1, match);
+            statement.setInt(2, Math.max(0, Math.min(limit, Constants.MAX_PAGE_SIZE)));
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    var drug = generateDrugFromResult(result);
+
+                    finalList.add(drug);
+                }
+            }
+        } catch (SQLException | IndexOutOfBoundsException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(new ArrayList<>());
+        }
+
+        _logger.traceExit("Found {} drugs.", finalList.size());
+        return finalList;
+    }
+
+    @Override
+    public Stream<Drug> stream(int fetchSize) {
+        _logger.traceEntry("Streaming all drugs.");
+
+        try {
+            return _logger.traceExit(JdbcStreams.stream(dbUtils.getReadOnlyConnection(), "SELECT * FROM drugs;", fetchSize, this::generateDrugFromResult));
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(Stream.empty());
+        }
+    }
+
     @Override
     public Optional<Drug> add(Drug entity) throws ValidationException, IllegalArgumentException {
         _logger.traceEntry("Adding Drug to repo.");
@@ -122,20 +327,18 @@ public class DrugRepository implements IDrugRepository {
             throw _logger.traceExit(ex);
         }
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("INSERT INTO drugs(name, description, in_stock) VALUES (?,?,?);")) {
+        try (var con = dbUtils.getConnection(); var statement = con.prepareStatement("INSERT INTO drugs(name, description, in_stock) VALUES (?,?,?);", Statement.RETURN_GENERATED_KEYS)) {
             statement.setString(1, entity.getName());
             statement.setString(2, entity.getDescription());
             statement.setInt(3, entity.getInStock());
 
             var result = statement.executeUpdate();
             if (result == 1) {
-                try (var extraStatement = con.prepareStatement("SELECT seq FROM sqlite_sequence WHERE name='drugs';")) {
-                    try(var extraResult = extraStatement.executeQuery()) {
-                        extraResult.next();
-                        var storedId = extraResult.getInt(1);
-                        entity.setId(storedId);
-                    }
+                try (var keys = statement.getGeneratedKeys()) {
+                    keys.next();
+                    var storedId = keys.getInt(1);
+                    entity.setId(storedId);
+                    entity.setVersion(0);
                 }
                 _logger.traceExit("Drug added to repo.");
 
@@ -163,11 +366,8 @@ public class DrugRepository implements IDrugRepository {
             return _logger.traceExit(Optional.empty());
         }
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("DELETE FROM drugs WHERE id=?;")) {
-            statement.setInt(1, id);
-
-            var result = statement.executeUpdate();
+        try {
+            var result = deleteRow(id);
             if (result == 1) {
                 _logger.traceExit("Drug removed.");
 
@@ -185,7 +385,7 @@ public class DrugRepository implements IDrugRepository {
     }
 
     @Override
-    public Optional<Drug> update(Drug entity) throws ValidationException, IllegalArgumentException {
+    public Optional<Drug> update(Drug entity) throws ValidationException, IllegalArgumentException, VersionConflictException {
         _logger.traceEntry("Updating Drug.");
 
         if (entity == null) {
@@ -211,19 +411,14 @@ public class DrugRepository implements IDrugRepository {
             return _logger.traceExit(Optional.empty());
         }
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("UPDATE drugs SET name=?, description=?, in_stock=? WHERE id=?;")) {
-            statement.setString(1, entity.getName());
-            statement.setString(2, entity.getDescription());
-            statement.setInt(3, entity.getInStock());
-            statement.setInt(4, entity.getId());
-
-            var result = statement.executeUpdate();
+        try {
+            var result = updateRow(entity);
             if (result == 1) {
                 _logger.traceExit("Drug with ID {} updated.", entity.getId());
 
                 return oldMatch;
             } else {
+                checkVersionConflict(entity);
                 _logger.error("No Drug with ID: {}.", entity.getId());
 
                 return _logger.traceExit(Optional.empty());
@@ -235,26 +430,267 @@ public class DrugRepository implements IDrugRepository {
         }
     }
 
+    @Override
+    public ImportReport importCsv(Reader source, int batchSize) throws IOException {
+        _logger.traceEntry("Importing drug catalog.");
+
+        var start = System.currentTimeMillis();
+        var reader = new BufferedReader(source);
+        var errors = new ArrayList<String>();
+        var batch = new ArrayList<Drug>(batchSize);
+        var rowsRead = 0;
+        var rowsImported = 0;
+        var lineNumber = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && line.trim().equalsIgnoreCase(Constants.DRUG_CATALOG_HEADER))) {
+                continue;
+            }
+
+            rowsRead++;
+            try {
+                var drug = generateDrugFromCsv(line);
+                validator.validate(drug);
+
+                batch.add(drug);
+            } catch (ValidationException | IllegalArgumentException ex) {
+                reportImportError(errors, "Line " + lineNumber + ": " + ex.getMessage());
+            }
+
+            if (batch.size() >= batchSize) {
+                rowsImported += upsertDrugs(batch, errors);
+                batch.clear();
+            }
+        }
+        rowsImported += upsertDrugs(batch, errors);
+
+        var report = new ImportReport(rowsRead, rowsImported, rowsRead - rowsImported, System.currentTimeMillis() - start, errors);
+
+        _logger.info("Imported {} of {} drugs at {} rows/s.", report.getRowsImported(), report.getRowsRead(), report.getRowsPerSecond());
+        return _logger.traceExit(report);
+    }
+
+    @Override
+    public long exportCsv(Writer target) throws IOException {
+        _logger.traceEntry("Exporting drug catalog.");
+
+        var exported = 0L;
+        var writer = new BufferedWriter(target);
+        writer.write(Constants.DRUG_CATALOG_HEADER);
+        writer.newLine();
+        try (var drugs = stream(Constants.DEFAULT_FETCH_SIZE)) {
+            var iterator = drugs.iterator();
+            while (iterator.hasNext()) {
+                var drug = iterator.next();
+
+                writer.write(CsvUtils.formatLine(drug.getName(), drug.getDescription(), drug.getInStock()));
+                writer.newLine();
+                exported++;
+            }
+        }
+        writer.flush();
+
+        _logger.traceExit("Exported {} drugs.", exported);
+        return exported;
+    }
+
+    @Override
+    public boolean modify(Drug entity) throws ValidationException, IllegalArgumentException, VersionConflictException {
+        _logger.traceEntry("Modifying Drug.");
+
+        if (entity == null) {
+            _logger.error("Null Drug received.");
+
+            throw _logger.traceExit(new IllegalArgumentException("Null Drug received."));
+        }
+
+        try {
+            validator.validate(entity);
+        }
+        catch (ValidationException ex) {
+            _logger.error(ex);
+
+            throw _logger.traceExit(ex);
+        }
+
+        try {
+            var modified = updateRow(entity) == 1;
+            if (!modified) {
+                checkVersionConflict(entity);
+                _logger.warn("No Drug with ID: {}.", entity.getId());
+            }
+
+            return _logger.traceExit(modified);
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(false);
+        }
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        _logger.traceEntry("Deleting Drug with ID: {}.", id);
+
+        try {
+            var deleted = deleteRow(id) == 1;
+            if (!deleted) {
+                _logger.warn("No Drug with ID: {}.", id);
+            }
+
+            return _logger.traceExit(deleted);
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(false);
+        }
+    }
+
     @Override
     public void clear() {
         _logger.traceEntry("Clearing Drug repo.");
 
-        var con = dbUtils.getConnection();
+        try (var con = dbUtils.getConnection()) {
+            //noinspection SqlWithoutWhere
+            try (var statement = con.prepareStatement("DELETE FROM drugs;")) {
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
 
-        //noinspection SqlWithoutWhere
-        try (var statement = con.prepareStatement("DELETE FROM drugs;")) {
-            statement.executeUpdate();
+            try (var statement = con.prepareStatement("UPDATE SQLITE_SEQUENCE SET SEQ=0 WHERE NAME='drugs';")) {
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
         } catch (SQLException ex) {
             _logger.error(ex);
         }
 
-        try (var statement = con.prepareStatement("UPDATE SQLITE_SEQUENCE SET SEQ=0 WHERE NAME='drugs';")) {
-            statement.executeUpdate();
+        _logger.traceExit("Drugs repo cleared.");
+    }
+
+    /**
+     * Inserts a batch of {@link Drug}s in one transaction, updating the ones whose name is already stored.
+     * @return the number of written {@link Drug}s; 0 if the batch was rolled back.
+     */
+    private int upsertDrugs(List<Drug> batch, List<String> errors) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return dbUtils.inTransaction(con -> {
+                try (var statement = con.prepareStatement(UPSERT_DRUG)) {
+                    for (var drug : batch) {
+                        statement.setString(1, drug.getName());
+                        statement.setString(2, drug.getDescription());
+                        statement.setInt(3, drug.getInStock());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+
+                return batch.size();
+            });
         } catch (SQLException ex) {
             _logger.error(ex);
+
+            reportImportError(errors, "Batch of " + batch.size() + " rows starting with " + batch.get(0).getName() + " not written: " + ex.getMessage());
+            return 0;
         }
+    }
 
-        _logger.traceExit("Drugs repo cleared.");
+    private void reportImportError(List<String> errors, String error) {
+        _logger.warn(error);
+
+        if (errors.size() < Constants.MAX_REPORTED_IMPORT_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    /**
+     * Turns a free text query into an FTS5 expression that requires every word of the query as a prefix,
+     * quoting each word so nothing in the query is read as FTS5 syntax.
+     * @return the expression, or an empty {@link String} if the query has no words.
+     */
+    private static String toMatchExpression(String query) {
+        if (query == null) {
+            return "";
+        }
+
+        return Arrays.stream(query.split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> "\"" + word + "\"*")
+                .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Writes every column of a {@link Drug} with a single statement, without reading it first.
+     * The update only applies if the stored version is still the one of the given {@link Drug}, and increments it.
+     * @return the number of updated rows; 0 if no {@link Drug} with the same {@code ID} and version is stored.
+     */
+    private int updateRow(Drug entity) throws SQLException {
+        try (var con = dbUtils.getConnection(); var statement = con.prepareStatement(UPDATE_DRUG)) {
+            statement.setString(1, entity.getName());
+            statement.setString(2, entity.getDescription());
+            statement.setInt(3, entity.getInStock());
+            statement.setInt(4, entity.getId());
+            statement.setInt(5, entity.getVersion());
+
+            var result = statement.executeUpdate();
+            if (result == 1) {
+                entity.setVersion(entity.getVersion() + 1);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Tells a stale {@link Drug} apart from a missing one after a compare-and-set update matched no row.
+     * @throws VersionConflictException if the {@link Drug} is stored with another version.
+     */
+    private void checkVersionConflict(Drug entity) throws VersionConflictException {
+        var stored = getById(entity.getId());
+        if (stored.isPresent()) {
+            _logger.warn("Version conflict for Drug with ID: {}.", entity.getId());
+
+            throw new VersionConflictException("Drug", entity.getId(), entity.getVersion(), stored.get().getVersion());
+        }
+    }
+
+    /**
+     * @return the number of deleted rows; 0 if no {@link Drug} with the given {@code ID} is stored.
+     */
+    private int deleteRow(Integer id) throws SQLException {
+        try (var con = dbUtils.getConnection(); var statement = con.prepareStatement(DELETE_DRUG)) {
+            statement.setInt(1, id);
+
+            return statement.executeUpdate();
+        }
+    }
+
+    private Drug generateDrugFromCsv(String line) throws IllegalArgumentException {
+        var fields = CsvUtils.parseLine(line);
+        if (fields.size() != 3) {
+            throw new IllegalArgumentException("Expected 3 columns but found " + fields.size() + ".");
+        }
+
+        int inStock;
+        try {
+            inStock = Integer.parseInt(fields.get(2).trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid in stock value: " + fields.get(2) + ".");
+        }
+
+        return new Drug.Builder()
+                .withName(fields.get(0).trim())
+                .withDescription(fields.get(1))
+                .withInStock(inStock)
+                .build();
     }
 
     private Drug generateDrugFromResult(ResultSet result) throws SQLException, IndexOutOfBoundsException {
@@ -264,13 +700,39 @@ public class DrugRepository implements IDrugRepository {
         var resultName = result.getString(2);
         var resultDescription = result.getString(3);
         var resultInStock = result.getInt(4);
+        var resultVersion = result.getInt("version");
 
         var drug = new Drug();
         drug.setId(resultId);
         drug.setName(resultName);
         drug.setDescription(resultDescription);
         drug.setInStock(resultInStock);
+        drug.setVersion(resultVersion);
 
         return drug;
     }
+
+    /**
+     * @param count the number of {@code ID}s, at most {@link Constants#MAX_IDS_PER_QUERY}.
+     * @return the query selecting the {@link Drug}s with {@code count} {@code ID}s, ordered by {@code ID}.
+     */
+    static String selectDrugsByIds(int count) {
+        return "SELECT * FROM drugs WHERE id IN (" + String.join(",", Collections.nCopies(count, "?")) + ") ORDER BY id;";
+    }
+
+    /**
+     * @return the query selecting a page of {@link Drug}s after an {@code ID}, with at most a number of {@link Drug}s.
+     */
+    static String selectDrugPage(boolean availableOnly) {
+        return "SELECT * FROM drugs WHERE id > ?" + (availableOnly ? " AND in_stock > 0" : "") + " ORDER BY id LIMIT ?;";
+    }
+
+    /**
+     * @return the query searching the {@link Drug}s matching a full text query, with at most a number of {@link Drug}s.
+     */
+    static String selectDrugSearch(boolean availableOnly) {
+        // Matches in the name rank ten times higher than matches in the description.
+        return "SELECT d.* FROM drugs_fts f JOIN drugs d ON d.id = f.rowid WHERE drugs_fts MATCH ?" + (availableOnly ? " AND d.in_stock > 0" : "") +
+                " ORDER BY bm25(drugs_fts, 10.0, 1.0) LIMIT ?;";
+    }
 }
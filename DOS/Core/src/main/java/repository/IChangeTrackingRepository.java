@@ -0,0 +1,33 @@
+package repository;
+
+import java.util.List;
+
+/**
+ * Repository whose inserts, updates and deletes are recorded in the change log of the database.
+ * Every change gets the next version of the log, shared by all tracked entities,
+ * so a client that remembers the last version it saw can ask for the changes made after it.
+ * @param <ID> the type of the {@code ID} of the tracked entities.
+ * @param <T> the type the changed entities are retrieved as.
+ */
+public interface IChangeTrackingRepository<ID, T> {
+    /**
+     * @return the version of the last change in the change log, for any entity, or 0 if nothing was changed yet.
+     */
+    long getChangeLogVersion();
+
+    /**
+     * Retrieves the entities inserted or updated after a version of the change log, in their current state.
+     * @param version the version after which the changes start; 0 for every stored entity.
+     * @param upToVersion the version of the last change to include.
+     * @return a {@link List} of the changed entities, ordered by the version of their last change.
+     */
+    List<T> getChangedSince(long version, long upToVersion);
+
+    /**
+     * Retrieves the {@code ID}s of the entities deleted after a version of the change log.
+     * @param version the version after which the changes start.
+     * @param upToVersion the version of the last change to include.
+     * @return a {@link List} of the {@code ID}s, ordered by the version of the deletion.
+     */
+    List<ID> getDeletedSince(long version, long upToVersion);
+}
@@ -1,9 +1,59 @@
 package repository;
 
+import domain.dto.DrugFilter;
+import domain.dto.ImportReport;
 import domain.models.Drug;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.List;
 
-public interface IDrugRepository extends IRepository<Integer, Drug> {
-    List<Drug> getAvailableDrugs();
+public interface IDrugRepository extends IRepository<Integer, Drug>, IChangeTrackingRepository<Integer, Drug> {
+    /**
+     * @return a {@link List} of the {@link Drug}s in stock.
+     * @throws RepositoryException if the {@link Drug}s could not be read.
+     */
+    List<Drug> getAvailableDrugs() throws RepositoryException;
+
+    /**
+     * Retrieves a page of {@link Drug}s, ordered by {@code ID}.
+     * The next page starts after the {@code ID} of the last {@link Drug} of the current one.
+     * @param afterId the {@code ID} after which the page starts, or {@code null} for the first page.
+     * @param limit the maximum number of {@link Drug}s in the page, capped at {@link utils.Constants#MAX_PAGE_SIZE}.
+     * @param filter the criteria the {@link Drug}s must match, or {@code null} for all {@link Drug}s.
+     * @return a {@link List} of at most {@code limit} {@link Drug}s.
+     */
+    List<Drug> getPage(Integer afterId, int limit, DrugFilter filter);
+
+    /**
+     * Searches the names and descriptions of the {@link Drug}s for every word of a query, matching words by prefix.
+     * @param query the words to search for; anything other than letters and digits separates words.
+     * @param limit the maximum number of {@link Drug}s to retrieve, capped at {@link utils.Constants#MAX_PAGE_SIZE}.
+     * @param filter the criteria the {@link Drug}s must match, or {@code null} for all {@link Drug}s.
+     * @return a {@link List} of at most {@code limit} matching {@link Drug}s, best matches first,
+     *         or an empty {@link List} if the query has no words.
+     */
+    List<Drug> searchDrugs(String query, int limit, DrugFilter filter);
+
+    /**
+     * Imports a drug catalog in CSV format, with the {@link utils.Constants#DRUG_CATALOG_HEADER} columns.
+     * Rows are validated and written in batches, each batch in its own transaction.
+     * A {@link Drug} whose name is already stored is updated instead of added.
+     * Invalid rows, and every row of a batch that could not be written, are rejected without stopping the import.
+     * @param source the catalog, read one row at a time.
+     * @param batchSize the number of rows written per transaction.
+     * @return an {@link ImportReport} with the number of imported and rejected rows.
+     * @throws IOException if the catalog could not be read.
+     */
+    ImportReport importCsv(Reader source, int batchSize) throws IOException;
+
+    /**
+     * Exports all stored {@link Drug}s in CSV format, with the {@link utils.Constants#DRUG_CATALOG_HEADER} columns,
+     * streaming them from the database instead of loading them all in memory.
+     * @param target the writer the catalog is written to.
+     * @return the number of exported {@link Drug}s.
+     * @throws IOException if the catalog could not be written.
+     */
+    long exportCsv(Writer target) throws IOException;
 }
@@ -1,9 +1,83 @@
 package repository;
 
+import domain.dto.OrderDTO;
+import domain.dto.OrderFilter;
 import domain.models.Order;
+import domain.validation.ValidationException;
 
+import java.sql.Date;
+import java.util.List;
 import java.util.Optional;
 
-public interface IOrderRepository extends IRepository<Integer, Order> {
-    Optional<Order> placeOrder(Order order);
+/**
+ * Changed {@link Order}s are tracked as {@link OrderDTO} summaries, see {@link #getOrderSummaries(OrderFilter)}.
+ */
+public interface IOrderRepository extends IRepository<Integer, Order>, IChangeTrackingRepository<Integer, OrderDTO> {
+    /**
+     * Adds an {@link Order} together with all its details in a single transaction,
+     * taking the ordered quantities out of the stock of the ordered drugs.
+     * @param order the {@link Order} to place.
+     * @return - an empty {@link Optional} if the {@link Order} was placed successfully.
+     *         - an {@link Optional} with the given {@link Order} if it could not be placed, in which case nothing was stored.
+     * @throws ValidationException if the given {@link Order} is invalid.
+     * @throws IllegalArgumentException if the given {@link Order} is {@code null}.
+     * @throws InsufficientStockException if any ordered drug does not have enough stock, in which case nothing was stored.
+     */
+    Optional<Order> placeOrder(Order order) throws ValidationException, IllegalArgumentException, InsufficientStockException;
+
+    /**
+     * Removes an {@link Order} that was not delivered yet, putting the ordered quantities back in stock.
+     * @param id the {@code ID} of the {@link Order} to cancel.
+     * @return - an empty {@link Optional} if no {@link Order} with the given {@code ID} is pending delivery.
+     *         - an {@link Optional} with the cancelled {@link Order} if it was cancelled successfully.
+     */
+    Optional<Order> cancelOrder(Integer id);
+
+    /**
+     * Marks an {@link Order} as delivered with a single statement.
+     * @param id the {@code ID} of the {@link Order} to complete.
+     * @return {@code true} if a pending {@link Order} with the given {@code ID} was marked as delivered.
+     */
+    boolean completeOrder(Integer id);
+
+    /**
+     * Moves delivered {@link Order}s and their details to the archive database, oldest {@code ID}s first.
+     * They are copied first and only deleted once their copy is in the archive,
+     * so an {@link Order} left in both databases by an interrupted move is moved again by the next call.
+     * Archived {@link Order}s are only read when a filter asks for them with {@link OrderFilter#getIncludeArchived()}.
+     * @param deliveredBefore the date before which an {@link Order} must have been delivered to be archived.
+     * @param maxOrders the maximum number of {@link Order}s to move.
+     * @return the number of moved {@link Order}s, or -1 if they could not be moved.
+     */
+    int archiveOrders(Date deliveredBefore, int maxOrders);
+
+    /**
+     * Retrieves a page of {@link Order}s, ordered by {@code ID}, together with their details.
+     * The next page starts after the {@code ID} of the last {@link Order} of the current one.
+     * @param afterId the {@code ID} after which the page starts, or {@code null} for the first page.
+     * @param limit the maximum number of {@link Order}s in the page, capped at {@link utils.Constants#MAX_PAGE_SIZE}.
+     * @param filter the criteria the {@link Order}s must match, or {@code null} for all {@link Order}s.
+     * @return a {@link List} of at most {@code limit} {@link Order}s.
+     */
+    List<Order> getPage(Integer afterId, int limit, OrderFilter filter);
+
+    /**
+     * Retrieves a summary of every {@link Order} matching a filter, ordered by {@code ID}, with the name of the user
+     * who placed it joined in the same query, and without its details.
+     * @param filter the criteria the {@link Order}s must match, or {@code null} for all {@link Order}s.
+     * @return a {@link List} of {@link OrderDTO}s; the name of a user that is not stored is replaced by its {@code ID}.
+     * @throws RepositoryException if the {@link Order}s could not be read.
+     */
+    List<OrderDTO> getOrderSummaries(OrderFilter filter) throws RepositoryException;
+
+    /**
+     * Retrieves a page of {@link Order} summaries, ordered by {@code ID}, like {@link #getOrderSummaries(OrderFilter)}.
+     * The next page starts after the {@code ID} of the last {@link Order} of the current one.
+     * @param afterId the {@code ID} after which the page starts, or {@code null} for the first page.
+     * @param limit the maximum number of {@link Order}s in the page, capped at {@link utils.Constants#MAX_PAGE_SIZE}.
+     * @param filter the criteria the {@link Order}s must match, or {@code null} for all {@link Order}s.
+     * @return a {@link List} of at most {@code limit} {@link OrderDTO}s.
+     * @throws RepositoryException if the {@link Order}s could not be read.
+     */
+    List<OrderDTO> getOrderSummaries(Integer afterId, int limit, OrderFilter filter) throws RepositoryException;
 }
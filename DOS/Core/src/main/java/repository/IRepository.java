@@ -2,9 +2,14 @@ package repository;
 
 import domain.models.Entity;
 import domain.validation.ValidationException;
+import utils.Constants;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Interface for a {@code Repository}.
@@ -20,12 +25,39 @@ public interface IRepository<ID, T extends Entity<ID>> {
      */
     Optional<T> getById(ID id);
 
+    /**
+     * Retrieves the {@link Entity} objects with the given {@code ID}s, querying the database in chunks of at most
+     * {@link Constants#MAX_IDS_PER_QUERY} {@code ID}s.
+     * @param ids the {@code ID}s of the {@link Entity} objects to retrieve.
+     * @return a {@link Map} from {@code ID} to {@link Entity}, without entries for {@code ID}s that are not stored in the database.
+     */
+    Map<ID, T> getByIds(Collection<ID> ids);
+
     /**
      * Retrieves a {@link List} of all {@link Entity} objects stored in the database.
      * @return a {@link List} of all {@link Entity} objects stored in the database.
      */
     List<T> getAll();
 
+    /**
+     * Streams all {@link Entity} objects stored in the database, reading them from the database as the stream is consumed.
+     * The stream holds a database connection until it is closed, so it should be used in a try-with-resources block.
+     * @param fetchSize the number of rows fetched from the database at a time.
+     * @return a lazy {@link Stream} of all {@link Entity} objects stored in the database,
+     *         or an empty {@link Stream} if they could not be read.
+     */
+    Stream<T> stream(int fetchSize);
+
+    /**
+     * Passes every {@link Entity} stored in the database to a consumer, without loading them all in memory.
+     * @param consumer the consumer of the {@link Entity} objects.
+     */
+    default void forEach(Consumer<? super T> consumer) {
+        try (var entities = stream(Constants.DEFAULT_FETCH_SIZE)) {
+            entities.forEach(consumer);
+        }
+    }
+
     /**
      * Adds an {@link Entity} to the database.
      * @param entity the {@link Entity} to be added.
@@ -45,14 +77,36 @@ public interface IRepository<ID, T extends Entity<ID>> {
     Optional<T> remove(ID id);
 
     /**
-     * Updates an {@link Entity} from the database.
+     * Updates an {@link Entity} from the database, if it was not changed since its version was read.
+     * On success, the version of the given {@link Entity} is incremented to match the stored one.
      * @param entity the updated {@link Entity}.
      * @return - an empty {@link Optional} if the {@link Entity} could not be updated.
      *         - an {@link Optional} with the old {@link Entity} if the {@link Entity} was updated successfully.
      * @throws ValidationException if the given {@link Entity} is invalid.
      * @throws IllegalArgumentException if the give {@link Entity} is {@code null}.
+     * @throws VersionConflictException if the stored {@link Entity} has another version than the given one.
+     */
+    Optional<T> update(T entity) throws ValidationException, IllegalArgumentException, VersionConflictException;
+
+    /**
+     * Updates an {@link Entity} from the database with a single statement, without reading it first,
+     * if it was not changed since its version was read.
+     * @param entity the updated {@link Entity}.
+     * @return {@code true} if the {@link Entity} was updated, {@code false} if no {@link Entity} with its {@code ID} is stored
+     *         or it could not be updated.
+     * @throws ValidationException if the given {@link Entity} is invalid.
+     * @throws IllegalArgumentException if the given {@link Entity} is {@code null}.
+     * @throws VersionConflictException if the stored {@link Entity} has another version than the given one.
+     */
+    boolean modify(T entity) throws ValidationException, IllegalArgumentException, VersionConflictException;
+
+    /**
+     * Removes an {@link Entity} from the database without reading it first.
+     * @param id the {@code ID} of the {@link Entity} to be removed.
+     * @return {@code true} if the {@link Entity} was removed, {@code false} if no {@link Entity} with the given {@code ID} is stored
+     *         or it could not be removed.
      */
-    Optional<T> update(T entity) throws ValidationException, IllegalArgumentException;
+    boolean delete(ID id);
 
     /**
      * Clears the database of all entries.
@@ -0,0 +1,22 @@
+package repository;
+
+import java.util.Map;
+
+/**
+ * Thrown when an order asks for more of some drugs than is in stock.
+ */
+public class InsufficientStockException extends RuntimeException {
+    private final Map<Integer, Integer> shortages;
+
+    /**
+     * @param shortages the missing quantity of every drug that is short, by drug {@code ID}.
+     */
+    public InsufficientStockException(Map<Integer, Integer> shortages) {
+        super("Not enough stock for drugs: " + shortages.keySet() + ".");
+        this.shortages = Map.copyOf(shortages);
+    }
+
+    public Map<Integer, Integer> getShortages() {
+        return shortages;
+    }
+}
@@ -1,16 +1,25 @@
 package repository;
 
+import domain.dto.OrderDTO;
+import domain.dto.OrderFilter;
 import domain.models.Order;
 import domain.validation.IValidator;
 import domain.validation.OrderValidator;
 import domain.validation.ValidationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import utils.Constants;
+import utils.JdbcStreams;
 import utils.JdbcUtils;
 
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.stream.Stream;
 
 public class OrderRepository implements IOrderRepository {
     private final JdbcUtils dbUtils;
@@ -18,47 +27,287 @@ public class OrderRepository implements IOrderRepository {
 
     private static final Logger _logger = LogManager.getLogger();
 
+    private static final String ORDER_WITH_DETAILS_COLUMNS =
+            "SELECT o.id, o.ordered_by, o.delivered, o.ordered_at, o.delivered_At, d.drug_id, d.quantity, o.version ";
+    /**
+     * The same columns as {@link #ORDER_WITH_DETAILS_COLUMNS}, for orders joined with the details of both databases as {@code d} and {@code a}.
+     */
+    private static final String ORDER_WITH_ANY_DETAILS_COLUMNS =
+            "SELECT o.id, o.ordered_by, o.delivered, o.ordered_at, o.delivered_At, COALESCE(d.drug_id, a.drug_id), COALESCE(d.quantity, a.quantity), o.version ";
+    private static final String SELECT_ORDERS_WITH_DETAILS =
+            ORDER_WITH_DETAILS_COLUMNS + "FROM orders o LEFT JOIN order_details d ON d.order_id = o.id ";
+    /**
+     * The orders of both databases, with an {@code archived} column telling which one each comes from.
+     */
+    private static final String ALL_ORDERS =
+            "(SELECT id, ordered_by, delivered, ordered_at, delivered_At, version, 0 AS archived FROM main.orders UNION ALL " +
+            "SELECT id, ordered_by, delivered, ordered_at, delivered_At, version, 1 AS archived FROM archive.orders)";
+    private static final String ARCHIVABLE_ORDER_IDS =
+            "SELECT id FROM main.orders WHERE delivered = ? AND delivered_At < ? ORDER BY id LIMIT ?";
+    /**
+     * The archivable orders whose copy in the archive has the same version, so an order changed since it was copied stays.
+     */
+    private static final String ARCHIVED_ORDER_IDS =
+            "SELECT m.id FROM main.orders m JOIN archive.orders a ON a.id = m.id AND a.version = m.version " +
+            "WHERE m.delivered = ? AND m.delivered_At < ? ORDER BY m.id LIMIT ?";
+
+    // The hot queries, package-private so their query plans are checked against the indexes by TestQueryPlans.
+    static final String SELECT_ORDER_BY_ID = SELECT_ORDERS_WITH_DETAILS + "WHERE o.id=? ORDER BY o.id;";
+    static final String SELECT_ALL_ORDERS = SELECT_ORDERS_WITH_DETAILS + "ORDER BY o.id;";
+    static final String RESERVE_STOCK = "UPDATE drugs SET in_stock = in_stock - ?, version = version + 1 WHERE id = ? AND in_stock >= ?;";
+    static final String RESTOCK = "UPDATE drugs SET in_stock = in_stock + ?, version = version + 1 WHERE id = ?;";
+    static final String COMPLETE_ORDER = "UPDATE orders SET delivered=?, version=version+1 WHERE id=? AND delivered=?;";
+    static final String UPDATE_ORDER = "UPDATE orders SET ordered_by=?, delivered=?, ordered_at=?, delivered_at=?, version=version+1 WHERE id=? AND version=?;";
+    static final String DELETE_ORDER_DETAILS = "DELETE FROM order_details WHERE order_id=?;";
+    static final String DELETE_ORDER = "DELETE FROM orders WHERE id=?;";
+    static final String SELECT_CHANGE_LOG_VERSION = "SELECT COALESCE(MAX(version), 0) FROM change_log;";
+    static final String SELECT_CHANGED_ORDERS =
+            "SELECT o.id, COALESCE(u.firstName || ' ' || u.lastName, CAST(o.ordered_by AS TEXT)), o.delivered, o.ordered_at, o.delivered_At " +
+            "FROM change_log c JOIN orders o ON o.id = c.entity_id LEFT JOIN users u ON u.id = o.ordered_by " +
+            "WHERE c.version > ? AND c.version <= ? AND c.entity = 'order' AND NOT c.deleted ORDER BY c.version;";
+    static final String SELECT_DELETED_ORDER_IDS =
+            "SELECT entity_id FROM change_log WHERE version > ? AND version <= ? AND entity = 'order' AND deleted ORDER BY version;";
+    static final String SELECT_ARCHIVABLE_ORDER_IDS = ARCHIVABLE_ORDER_IDS + ";";
+    static final String SELECT_ARCHIVED_ORDER_IDS = ARCHIVED_ORDER_IDS + ";";
+
     public OrderRepository(String jdbcUrl) {
+        this(JdbcUtils.propertiesFor(jdbcUrl));
+    }
+
+    /**
+     * @param props the database properties, see {@link JdbcUtils} and {@link utils.StorageProfile}.
+     */
+    public OrderRepository(Properties props) {
         _logger.info("Initializing Order Repository.");
 
-        var props = new Properties();
-        props.setProperty("jdbc.url", jdbcUrl);
         dbUtils = new JdbcUtils(props);
         validator = new OrderValidator();
     }
 
     @Override
-    public Optional<Order> placeOrder(Order order) {
+    public Optional<Order> placeOrder(Order order) throws ValidationException, IllegalArgumentException, InsufficientStockException {
         _logger.traceEntry("Placing order.");
 
-        var result = add(order);
+        if (order == null) {
+            _logger.error("Null Order received.");
+
+            throw _logger.traceExit(new IllegalArgumentException("Null Order received."));
+        }
+
+        try {
+            validator.validate(order);
+        }
+        catch (ValidationException ex) {
+            _logger.error(ex);
+
+            throw _logger.traceExit(ex);
+        }
+
+        var originalId = order.getId();
+        try {
+            dbUtils.inTransaction(con -> {
+                reserveStock(con, order);
+                if (!insertOrder(con, order)) {
+                    // Rolls back the stock reserved above.
+                    throw new SQLException("Order could not be inserted.");
+                }
+                insertOrderDetails(con, order);
+                return null;
+            });
+        } catch (InsufficientStockException ex) {
+            _logger.warn("Order not placed, shortages: {}", ex.getShortages());
+
+            throw _logger.traceExit(ex);
+        } catch (SQLException ex) {
+            _logger.error(ex);
+            order.setId(originalId);
 
-        if (result.isEmpty()) {
-            for (var details : order.getDrugs().keySet()) {
-                addOrderDetails(order.getId(), details, order.getDrugs().get(details));
-            }
-            _logger.traceExit("Order placed.");
-        } else {
             _logger.traceExit("Order not placed.");
+            return Optional.of(order);
         }
 
-        return result;
+        _logger.traceExit("Order placed.");
+        return Optional.empty();
     }
 
+    @Override
+    public Optional<Order> cancelOrder(Integer id) {
+        _logger.traceEntry("Cancelling Order with ID: {}.", id);
 
-    private void addOrderDetails(Integer orderId, Integer drugId, Integer quality) {
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("INSERT INTO order_details(order_id, drug_id, quantity) VALUES (?,?,?);")) {
-            statement.setInt(1, orderId);
-            statement.setInt(2, drugId);
-            statement.setInt(3, quality);
+        try {
+            var cancelled = dbUtils.inTransaction(con -> {
+                var order = getById(id);
+                if (order.isEmpty() || order.get().getDelivered()) {
+                    return Optional.<Order>empty();
+                }
 
-            var result = statement.executeUpdate();
-            if (result != 1) {
-                _logger.error("Failed to add order details.");
+                try (var restock = con.prepareStatement(RESTOCK)) {
+                    for (var details : order.get().getDrugs().entrySet()) {
+                        restock.setInt(1, details.getValue());
+                        restock.setInt(2, details.getKey());
+                        restock.addBatch();
+                    }
+                    restock.executeBatch();
+                }
+                try (var statement = con.prepareStatement(DELETE_ORDER_DETAILS)) {
+                    statement.setInt(1, id);
+                    statement.executeUpdate();
+                }
+                try (var statement = con.prepareStatement(DELETE_ORDER)) {
+                    statement.setInt(1, id);
+                    statement.executeUpdate();
+                }
+
+                return order;
+            });
+
+            if (cancelled.isEmpty()) {
+                _logger.warn("No pending Order with ID: {}.", id);
+            }
+            return _logger.traceExit(cancelled);
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(Optional.empty());
+        }
+    }
+
+    @Override
+    public int archiveOrders(Date deliveredBefore, int maxOrders) {
+        _logger.traceEntry("Archiving Orders delivered before {}.", deliveredBefore);
+
+        // SQLite does not commit a transaction atomically across attached databases in WAL mode,
+        // so the orders are copied in a first transaction, and only the copies found in the archive are deleted in a second one.
+        // Copying replaces what an interrupted run left in the archive, so the next run moves those orders again.
+        try {
+            dbUtils.inTransaction(con -> {
+                moveArchivableRows(con, "INSERT OR REPLACE INTO archive.orders(id, ordered_by, delivered, ordered_at, delivered_At, version) " +
+                        "SELECT id, ordered_by, delivered, ordered_at, delivered_At, version FROM main.orders WHERE id IN (" + ARCHIVABLE_ORDER_IDS + ");", deliveredBefore, maxOrders);
+                moveArchivableRows(con, "DELETE FROM archive.order_details WHERE order_id IN (" + ARCHIVABLE_ORDER_IDS + ");", deliveredBefore, maxOrders);
+                moveArchivableRows(con, "INSERT INTO archive.order_details(order_id, drug_id, quantity) " +
+                        "SELECT order_id, drug_id, quantity FROM main.order_details WHERE order_id IN (" + ARCHIVABLE_ORDER_IDS + ");", deliveredBefore, maxOrders);
+                return null;
+            });
+            var archived = dbUtils.inTransaction(con -> {
+                moveArchivableRows(con, "DELETE FROM main.order_details WHERE order_id IN (" + ARCHIVED_ORDER_IDS + ");", deliveredBefore, maxOrders);
+                return moveArchivableRows(con, "DELETE FROM main.orders WHERE id IN (" + ARCHIVED_ORDER_IDS + ");", deliveredBefore, maxOrders);
+            });
+
+            _logger.traceExit("Archived {} orders.", archived);
+            return archived;
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(-1);
+        }
+    }
+
+    @Override
+    public boolean completeOrder(Integer id) {
+        _logger.traceEntry("Completing Order with ID: {}.", id);
+
+        try (var con = dbUtils.getConnection(); var statement = con.prepareStatement(COMPLETE_ORDER)) {
+            statement.setBoolean(1, true);
+            statement.setInt(2, id);
+            statement.setBoolean(3, false);
+
+            var completed = statement.executeUpdate() == 1;
+            if (!completed) {
+                _logger.warn("No pending Order with ID: {}.", id);
             }
+
+            return _logger.traceExit(completed);
         } catch (SQLException ex) {
             _logger.error(ex);
+
+            return _logger.traceExit(false);
+        }
+    }
+
+    /**
+     * Takes the ordered quantities out of stock, with one conditional update per drug,
+     * so concurrent orders can never take more than is in stock.
+     * @param con the connection of the transaction placing the {@link Order}.
+     * @param order the {@link Order} to reserve stock for.
+     * @throws InsufficientStockException if any drug does not have enough stock; the transaction must then be rolled back.
+     * @throws SQLException if the stock could not be updated.
+     */
+    private void reserveStock(Connection con, Order order) throws SQLException, InsufficientStockException {
+        if (order.getDrugs().isEmpty()) {
+            return;
+        }
+
+        var lines = new ArrayList<>(order.getDrugs().entrySet());
+        var shortDrugIds = new ArrayList<Integer>();
+        try (var statement = con.prepareStatement(RESERVE_STOCK)) {
+            for (var line : lines) {
+                statement.setInt(1, line.getValue());
+                statement.setInt(2, line.getKey());
+                statement.setInt(3, line.getValue());
+                statement.addBatch();
+            }
+
+            var results = statement.executeBatch();
+            for (var i = 0; i < results.length; i++) {
+                if (results[i] == 0) {
+                    shortDrugIds.add(lines.get(i).getKey());
+                }
+            }
+        }
+
+        if (!shortDrugIds.isEmpty()) {
+            throw new InsufficientStockException(getShortages(con, order, shortDrugIds));
+        }
+    }
+
+    /**
+     * @return the quantity missing from stock for each of the given drugs of an {@link Order}.
+     */
+    private Map<Integer, Integer> getShortages(Connection con, Order order, List<Integer> drugIds) throws SQLException {
+        var shortages = new HashMap<Integer, Integer>();
+        for (var drugId : drugIds) {
+            shortages.put(drugId, order.getDrugs().get(drugId));
+        }
+
+        try (var statement = con.prepareStatement(selectStock(drugIds.size()))) {
+            for (var i = 0; i < drugIds.size(); i++) {
+                statement.setInt(i + 1, drugIds.get(i));
+            }
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    var drugId = result.getInt(1);
+                    shortages.put(drugId, order.getDrugs().get(drugId) - result.getInt(2));
+                }
+            }
+        }
+
+        return shortages;
+    }
+
+    /**
+     * Inserts all the details of an {@link Order} with a single batch.
+     * @param con the connection of the transaction placing the {@link Order}.
+     * @param order the {@link Order}, with its {@code ID} already assigned.
+     * @throws SQLException if any of the details could not be inserted.
+     */
+    private void insertOrderDetails(Connection con, Order order) throws SQLException {
+        if (order.getDrugs().isEmpty()) {
+            return;
+        }
+
+        try (var statement = con.prepareStatement("INSERT INTO order_details(order_id, drug_id, quantity) VALUES (?,?,?);")) {
+            for (var details : order.getDrugs().entrySet()) {
+                statement.setInt(1, order.getId());
+                statement.setInt(2, details.getKey());
+                statement.setInt(3, details.getValue());
+                statement.addBatch();
+            }
+
+            for (var result : statement.executeBatch()) {
+                if (result != 1 && result != Statement.SUCCESS_NO_INFO) {
+                    throw new SQLException("Failed to add order details.");
+                }
+            }
         }
     }
 
@@ -66,56 +315,86 @@ public class OrderRepository implements IOrderRepository {
     public Optional<Order> getById(Integer id) {
         _logger.traceEntry("Getting Order with ID: {}.", id);
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("SELECT * FROM orders WHERE id=?;")) {
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_ORDER_BY_ID)) {
             statement.setInt(1, id);
             try (var result = statement.executeQuery()) {
-                if (!result.next()) {
+                var orders = generateOrdersFromResult(result);
+                if (orders.isEmpty()) {
                     _logger.warn("No Order with ID: {}.", id);
 
                     return _logger.traceExit(Optional.empty());
                 }
 
-                var orderId = result.getInt(1);
-                Order order;
+                return _logger.traceExit("Found Order: {}.", Optional.of(orders.get(0)));
+            }
+        } catch (SQLException | IndexOutOfBoundsException ex) {
+            _logger.error(ex);
 
-                try (var orderDetailsStatement = con.prepareStatement("SELECT * FROM order_details WHERE order_id=?;")) {
-                    orderDetailsStatement.setInt(1, orderId);
-                    try (var orderDetails = orderDetailsStatement.executeQuery()) {
-                        order = generateOrderFromResult(result, orderDetails);
+            return _logger.traceExit(Optional.empty());
+        }
+    }
+
+    @Override
+    public Map<Integer, Order> getByIds(Collection<Integer> ids) {
+        _logger.traceEntry("Getting Orders with IDs: {}.", ids);
+
+        var found = new LinkedHashMap<Integer, Order>();
+        var distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+
+        try (var con = dbUtils.getReadOnlyConnection()) {
+            for (var from = 0; from < distinctIds.size(); from += Constants.MAX_IDS_PER_QUERY) {
+                var chunk = distinctIds.subList(from, Math.min(from + Constants.MAX_IDS_PER_QUERY, distinctIds.size()));
+                try (var statement = con.prepareStatement(selectOrdersByIds(chunk.size()))) {
+                    for (var i = 0; i < chunk.size(); i++) {
+                        statement.setInt(i + 1, chunk.get(i));
+                    }
+                    try (var result = statement.executeQuery()) {
+                        for (var order : generateOrdersFromResult(result)) {
+                            found.put(order.getId(), order);
+                        }
                     }
                 }
-
-                return _logger.traceExit("Found Order: {}.", Optional.of(order));
             }
         } catch (SQLException | IndexOutOfBoundsException ex) {
             _logger.error(ex);
 
-            return _logger.traceExit(Optional.empty());
+            return _logger.traceExit(new LinkedHashMap<>());
         }
+
+        _logger.traceExit("Found {} orders.", found.size());
+        return found;
     }
 
     @Override
     public List<Order> getAll() {
         _logger.traceEntry("Getting all orders.");
 
-        var finalList = new ArrayList<Order>();
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("SELECT * FROM orders;")) {
+        List<Order> finalList;
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_ALL_ORDERS)) {
             try (var result = statement.executeQuery()) {
-                while (result.next()) {
-                    var orderId = result.getInt(1);
-                    Order order;
+                finalList = generateOrdersFromResult(result);
+            }
+        } catch (SQLException | IndexOutOfBoundsException ex) {
+            _logger.error(ex);
 
-                    try (var orderDetailsStatement = con.prepareStatement("SELECT * FROM order_details WHERE order_id=?;")) {
-                        orderDetailsStatement.setInt(1, orderId);
-                        try (var orderDetails = orderDetailsStatement.executeQuery()) {
-                            order = generateOrderFromResult(result, orderDetails);
-                        }
-                    }
+            return _logger.traceExit(new ArrayList<>());
+        }
 
-                    finalList.add(order);
-                }
+        _logger.traceExit("Retrieved {} orders.", finalList.size());
+        return finalList;
+    }
+
+    @Override
+    public List<Order> getPage(Integer afterId, int limit, OrderFilter filter) {
+        _logger.traceEntry("Getting page of Orders after ID: {}.", afterId);
+
+        var params = new ArrayList<Object>();
+        var sql = selectOrderPage(afterId, limit, filter, params);
+        List<Order> finalList;
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(sql)) {
+            bindParameters(statement, params);
+            try (var result = statement.executeQuery()) {
+                finalList = generateOrdersFromResult(result);
             }
         } catch (SQLException | IndexOutOfBoundsException ex) {
             _logger.error(ex);
@@ -127,6 +406,96 @@ public class OrderRepository implements IOrderRepository {
         return finalList;
     }
 
+    @Override
+    public List<OrderDTO> getOrderSummaries(OrderFilter filter) {
+        _logger.traceEntry("Getting all order summaries.");
+
+        return _logger.traceExit(querySummaries(null, null, filter));
+    }
+
+    @Override
+    public List<OrderDTO> getOrderSummaries(Integer afterId, int limit, OrderFilter filter) {
+        _logger.traceEntry("Getting page of order summaries after ID: {}.", afterId);
+
+        return _logger.traceExit(querySummaries(afterId, Math.max(0, Math.min(limit, Constants.MAX_PAGE_SIZE)), filter));
+    }
+
+    @Override
+    public long getChangeLogVersion() {
+        _logger.traceEntry("Getting change log version.");
+
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_CHANGE_LOG_VERSION)) {
+            try (var result = statement.executeQuery()) {
+                result.next();
+
+                return _logger.traceExit(result.getLong(1));
+            }
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(0L);
+        }
+    }
+
+    @Override
+    public List<OrderDTO> getChangedSince(long version, long upToVersion) {
+        _logger.traceEntry("Getting orders changed after version {}.", version);
+
+        var changed = new ArrayList<OrderDTO>();
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_CHANGED_ORDERS)) {
+            statement.setLong(1, version);
+            statement.setLong(2, upToVersion);
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    changed.add(new OrderDTO(result.getInt(1), result.getString(2), result.getBoolean(3), result.getDate(4), result.getDate(5)));
+                }
+            }
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(new ArrayList<>());
+        }
+
+        _logger.traceExit("Found {} changed orders.", changed.size());
+        return changed;
+    }
+
+    @Override
+    public List<Integer> getDeletedSince(long version, long upToVersion) {
+        _logger.traceEntry("Getting orders deleted after version {}.", version);
+
+        var deleted = new ArrayList<Integer>();
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_DELETED_ORDER_IDS)) {
+            statement.setLong(1, version);
+            statement.setLong(2, upToVersion);
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    deleted.add(result.getInt(1));
+                }
+            }
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(new ArrayList<>());
+        }
+
+        _logger.traceExit("Found {} deleted orders.", deleted.size());
+        return deleted;
+    }
+
+    @Override
+    public Stream<Order> stream(int fetchSize) {
+        _logger.traceEntry("Streaming all orders.");
+
+        try {
+            return _logger.traceExit(JdbcStreams.stream(dbUtils.getReadOnlyConnection(), SELECT_ALL_ORDERS, fetchSize, this::generateOrderFromRow, this::mergeOrderDetail));
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(Stream.empty());
+        }
+    }
+
     @Override
     public Optional<Order> add(Order entity) throws ValidationException, IllegalArgumentException {
         _logger.traceEntry("Adding Order to repo.");
@@ -146,22 +515,8 @@ public class OrderRepository implements IOrderRepository {
             throw _logger.traceExit(ex);
         }
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("INSERT INTO orders(ordered_by, delivered, ordered_at, delivered_At) VALUES (?,?,?,?);")) {
-            statement.setInt(1, entity.getOrderedBy());
-            statement.setBoolean(2, entity.getDelivered());
-            statement.setDate(3, entity.getOrderedAt());
-            statement.setDate(4, entity.getDeliveredAt());
-
-            var result = statement.executeUpdate();
-            if (result == 1) {
-                try (var extraStatement = con.prepareStatement("SELECT seq FROM sqlite_sequence WHERE name='orders';")) {
-                    try(var extraResult = extraStatement.executeQuery()) {
-                        extraResult.next();
-                        var storedId = extraResult.getInt(1);
-                        entity.setId(storedId);
-                    }
-                }
+        try (var con = dbUtils.getConnection()) {
+            if (insertOrder(con, entity)) {
                 _logger.traceExit("Order added to repo.");
 
                 return Optional.empty();
@@ -177,6 +532,36 @@ public class OrderRepository implements IOrderRepository {
         }
     }
 
+    /**
+     * Inserts the header row of an {@link Order} and stores the generated {@code ID} in it.
+     * @param con the connection to insert with.
+     * @param entity the {@link Order} to insert.
+     * @return {@code true} if the row was inserted.
+     * @throws SQLException if the row could not be inserted.
+     */
+    private boolean insertOrder(Connection con, Order entity) throws SQLException {
+        try (var statement = con.prepareStatement("INSERT INTO orders(ordered_by, delivered, ordered_at, delivered_At) VALUES (?,?,?,?);", Statement.RETURN_GENERATED_KEYS)) {
+            statement.setInt(1, entity.getOrderedBy());
+            statement.setBoolean(2, entity.getDelivered());
+            statement.setDate(3, entity.getOrderedAt());
+            statement.setDate(4, entity.getDeliveredAt());
+
+            var result = statement.executeUpdate();
+            if (result != 1) {
+                return false;
+            }
+
+            try (var keys = statement.getGeneratedKeys()) {
+                keys.next();
+                var storedId = keys.getInt(1);
+                entity.setId(storedId);
+                entity.setVersion(0);
+            }
+
+            return true;
+        }
+    }
+
     @Override
     public Optional<Order> remove(Integer id) {
         _logger.traceEntry("Removing Order with ID: {}.", id);
@@ -188,11 +573,8 @@ public class OrderRepository implements IOrderRepository {
             return _logger.traceExit(Optional.empty());
         }
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("DELETE FROM orders WHERE id=?;")) {
-            statement.setInt(1, id);
-
-            var result = statement.executeUpdate();
+        try {
+            var result = deleteRow(id);
             if (result == 1) {
                 _logger.traceExit("Order removed.");
 
@@ -210,7 +592,7 @@ public class OrderRepository implements IOrderRepository {
     }
 
     @Override
-    public Optional<Order> update(Order entity) throws ValidationException, IllegalArgumentException {
+    public Optional<Order> update(Order entity) throws ValidationException, IllegalArgumentException, VersionConflictException {
         _logger.traceEntry("Updating Order.");
 
         if (entity == null) {
@@ -236,20 +618,14 @@ public class OrderRepository implements IOrderRepository {
             return _logger.traceExit(Optional.empty());
         }
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("UPDATE orders SET ordered_by=?, delivered=?, ordered_at=?, delivered_at=? WHERE id=?;")) {
-            statement.setInt(1, entity.getOrderedBy());
-            statement.setBoolean(2, entity.getDelivered());
-            statement.setDate(3, entity.getOrderedAt());
-            statement.setDate(4, entity.getDeliveredAt());
-            statement.setInt(5, entity.getId());
-
-            var result = statement.executeUpdate();
+        try {
+            var result = updateRow(entity);
             if (result == 1) {
                 _logger.traceExit("Order with ID {} updated.", entity.getId());
 
                 return oldMatch;
             } else {
+                checkVersionConflict(entity);
                 _logger.error("No Order with ID: {}.", entity.getId());
 
                 return _logger.traceExit(Optional.empty());
@@ -262,27 +638,95 @@ public class OrderRepository implements IOrderRepository {
     }
 
     @Override
-    public void clear() {
-        _logger.traceEntry("Clearing Order repo.");
+    public boolean modify(Order entity) throws ValidationException, IllegalArgumentException, VersionConflictException {
+        _logger.traceEntry("Modifying Order.");
 
-        var con = dbUtils.getConnection();
+        if (entity == null) {
+            _logger.error("Null Order received.");
 
-        //noinspection SqlWithoutWhere
-        try (var statement = con.prepareStatement("DELETE FROM order_details;")) {
-            statement.executeUpdate();
+            throw _logger.traceExit(new IllegalArgumentException("Null Order received."));
+        }
+
+        try {
+            validator.validate(entity);
+        }
+        catch (ValidationException ex) {
+            _logger.error(ex);
+
+            throw _logger.traceExit(ex);
+        }
+
+        try {
+            var modified = updateRow(entity) == 1;
+            if (!modified) {
+                checkVersionConflict(entity);
+                _logger.warn("No Order with ID: {}.", entity.getId());
+            }
+
+            return _logger.traceExit(modified);
         } catch (SQLException ex) {
             _logger.error(ex);
+
+            return _logger.traceExit(false);
         }
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        _logger.traceEntry("Deleting Order with ID: {}.", id);
 
-        //noinspection SqlWithoutWhere
-        try (var statement = con.prepareStatement("DELETE FROM orders;")) {
-            statement.executeUpdate();
+        try {
+            var deleted = deleteRow(id) == 1;
+            if (!deleted) {
+                _logger.warn("No Order with ID: {}.", id);
+            }
+
+            return _logger.traceExit(deleted);
         } catch (SQLException ex) {
             _logger.error(ex);
+
+            return _logger.traceExit(false);
         }
+    }
+
+    @Override
+    public void clear() {
+        _logger.traceEntry("Clearing Order repo.");
+
+        try (var con = dbUtils.getConnection()) {
+            //noinspection SqlWithoutWhere
+            try (var statement = con.prepareStatement("DELETE FROM order_details;")) {
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
+
+            //noinspection SqlWithoutWhere
+            try (var statement = con.prepareStatement("DELETE FROM orders;")) {
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
+
+            //noinspection SqlWithoutWhere
+            try (var statement = con.prepareStatement("DELETE FROM archive.order_details;")) {
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
 
-        try (var statement = con.prepareStatement("UPDATE SQLITE_SEQUENCE SET SEQ=0 WHERE NAME='orders' OR NAME='order_details';")) {
-            statement.executeUpdate();
+            //noinspection SqlWithoutWhere
+            try (var statement = con.prepareStatement("DELETE FROM archive.orders;")) {
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
+
+            try (var statement = con.prepareStatement("UPDATE SQLITE_SEQUENCE SET SEQ=0 WHERE NAME='orders' OR NAME='order_details';")) {
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
         } catch (SQLException ex) {
             _logger.error(ex);
         }
@@ -290,24 +734,261 @@ public class OrderRepository implements IOrderRepository {
         _logger.traceExit("Order and order_details repo cleared.");
     }
 
-    private Order generateOrderFromResult(ResultSet orders, ResultSet drugs) throws SQLException, IndexOutOfBoundsException {
-        _logger.info("Generating Order from result.");
+    /**
+     * Writes every column of an {@link Order} with a single statement, without reading it first.
+     * The update only applies if the stored version is still the one of the given {@link Order}, and increments it.
+     * @return the number of updated rows; 0 if no {@link Order} with the same {@code ID} and version is stored.
+     */
+    private int updateRow(Order entity) throws SQLException {
+        try (var con = dbUtils.getConnection(); var statement = con.prepareStatement(UPDATE_ORDER)) {
+            statement.setInt(1, entity.getOrderedBy());
+            statement.setBoolean(2, entity.getDelivered());
+            statement.setDate(3, entity.getOrderedAt());
+            statement.setDate(4, entity.getDeliveredAt());
+            statement.setInt(5, entity.getId());
+            statement.setInt(6, entity.getVersion());
 
-        var resultId = orders.getInt(1);
-        var resultOrderedBy = orders.getInt(2);
-        var resultDelivered = orders.getBoolean(3);
-        var resultOrderedAt = orders.getDate(4);
-        var resultDeliveredAt = orders.getDate(5);
+            var result = statement.executeUpdate();
+            if (result == 1) {
+                entity.setVersion(entity.getVersion() + 1);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Tells a stale {@link Order} apart from a missing one after a compare-and-set update matched no row.
+     * @throws VersionConflictException if the {@link Order} is stored with another version.
+     */
+    private void checkVersionConflict(Order entity) throws VersionConflictException {
+        var stored = getById(entity.getId());
+        if (stored.isPresent()) {
+            _logger.warn("Version conflict for Order with ID: {}.", entity.getId());
+
+            throw new VersionConflictException("Order", entity.getId(), entity.getVersion(), stored.get().getVersion());
+        }
+    }
+
+    /**
+     * Deletes an {@link Order} and its details in one transaction, without reading them first.
+     * @return the number of deleted {@link Order}s.
+     */
+    private int deleteRow(Integer id) throws SQLException {
+        return dbUtils.inTransaction(con -> {
+            try (var statement = con.prepareStatement(DELETE_ORDER_DETAILS)) {
+                statement.setInt(1, id);
+                statement.executeUpdate();
+            }
+            try (var statement = con.prepareStatement(DELETE_ORDER)) {
+                statement.setInt(1, id);
+
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Selects the matching orders joined with the names of the users who placed them.
+     * @param limit the maximum number of summaries, or {@code null} for all of them.
+     */
+    private List<OrderDTO> querySummaries(Integer afterId, Integer limit, OrderFilter filter) {
+        var params = new ArrayList<Object>();
+        var sql = selectOrderSummaries(afterId, limit, filter, params);
+        var summaries = new ArrayList<OrderDTO>();
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(sql)) {
+            bindParameters(statement, params);
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    summaries.add(new OrderDTO(result.getInt(1), result.getString(2), result.getBoolean(3), result.getDate(4), result.getDate(5)));
+                }
+            }
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            throw new RepositoryException("Order summaries could not be read.", ex);
+        }
+
+        _logger.info("Retrieved {} order summaries.", summaries.size());
+        return summaries;
+    }
+
+    private int moveArchivableRows(Connection con, String sql, Date deliveredBefore, int maxOrders) throws SQLException {
+        try (var statement = con.prepareStatement(sql)) {
+            statement.setBoolean(1, true);
+            statement.setDate(2, deliveredBefore);
+            statement.setInt(3, maxOrders);
+
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * @return the table expression with the orders the filter selects from, including the archived ones if it asks for them.
+     */
+    private static String ordersSource(OrderFilter filter) {
+        return includesArchive(filter) ? ALL_ORDERS : "orders";
+    }
+
+    private static boolean includesArchive(OrderFilter filter) {
+        return filter != null && Boolean.TRUE.equals(filter.getIncludeArchived());
+    }
+
+    /**
+     * Appends the SQL conditions of an {@link OrderFilter} to a {@code WHERE} clause over the {@code orders} table.
+     * @param filter the filter, or {@code null} for no extra conditions.
+     * @param conditions the {@code WHERE} clause to extend.
+     * @param params the parameters of the clause, extended with the ones of the appended conditions.
+     */
+    private static void appendFilterConditions(OrderFilter filter, StringBuilder conditions, List<Object> params) {
+        if (filter == null) {
+            return;
+        }
+        if (filter.getDelivered() != null) {
+            conditions.append(" AND delivered = ?");
+            params.add(filter.getDelivered());
+        }
+        if (filter.getOrderedBy() != null) {
+            conditions.append(" AND ordered_by = ?");
+            params.add(filter.getOrderedBy());
+        }
+        if (filter.getOrderedFrom() != null) {
+            conditions.append(" AND ordered_at >= ?");
+            params.add(filter.getOrderedFrom());
+        }
+        if (filter.getOrderedTo() != null) {
+            conditions.append(" AND ordered_at < ?");
+            params.add(filter.getOrderedTo());
+        }
+    }
+
+    private void bindParameters(PreparedStatement statement, List<Object> params) throws SQLException {
+        for (var i = 0; i < params.size(); i++) {
+            var param = params.get(i);
+            if (param instanceof Boolean) {
+                statement.setBoolean(i + 1, (Boolean) param);
+            } else if (param instanceof Date) {
+                statement.setDate(i + 1, (Date) param);
+            } else {
+                statement.setInt(i + 1, (Integer) param);
+            }
+        }
+    }
+
+    /**
+     * Builds {@link Order} aggregates in a single pass over rows of {@link #SELECT_ORDERS_WITH_DETAILS}.
+     * The rows must be ordered by the order id, so all the details of an order are consecutive.
+     */
+    private List<Order> generateOrdersFromResult(ResultSet result) throws SQLException, IndexOutOfBoundsException {
+        _logger.info("Generating Orders from result.");
+
+        var orders = new ArrayList<Order>();
+        Order current = null;
+
+        while (result.next()) {
+            if (current == null || !mergeOrderDetail(current, result)) {
+                current = generateOrderFromRow(result);
+                orders.add(current);
+            }
+        }
+
+        return orders;
+    }
+
+    /**
+     * Builds an {@link Order} from the current row of {@link #SELECT_ORDERS_WITH_DETAILS}, with the detail on that row.
+     */
+    private Order generateOrderFromRow(ResultSet result) throws SQLException {
+        var resultId = result.getInt(1);
+        var resultOrderedBy = result.getInt(2);
+        var resultDelivered = result.getBoolean(3);
+        var resultOrderedAt = result.getDate(4);
+        var resultDeliveredAt = result.getDate(5);
+        var resultVersion = result.getInt(8);
 
         var order = new Order(resultId, resultOrderedBy, resultDelivered, resultOrderedAt, resultDeliveredAt);
+        order.setVersion(resultVersion);
+        addDetailFromRow(order, result);
+
+        return order;
+    }
+
+    /**
+     * Adds the detail on the current row of {@link #SELECT_ORDERS_WITH_DETAILS} to an {@link Order}, if the row belongs to it.
+     * @return {@code true} if the row belongs to the {@link Order}, {@code false} if it starts another one.
+     */
+    private boolean mergeOrderDetail(Order order, ResultSet result) throws SQLException {
+        if (!order.getId().equals(result.getInt(1))) {
+            return false;
+        }
+
+        addDetailFromRow(order, result);
+        return true;
+    }
 
-        while (drugs.next()) {
-            var resultDrugId = drugs.getInt(2);
-            var resultQuantity = drugs.getInt(3);
+    private void addDetailFromRow(Order order, ResultSet result) throws SQLException {
+        var resultDrugId = result.getInt(6);
+        if (!result.wasNull()) {
+            var resultQuantity = result.getInt(7);
 
             order.addDrug(resultDrugId, resultQuantity);
         }
+    }
 
-        return order;
+    /**
+     * @param count the number of {@code ID}s, at most {@link Constants#MAX_IDS_PER_QUERY}.
+     * @return the query selecting the {@link Order}s with {@code count} {@code ID}s and their details, ordered by {@code ID}.
+     */
+    static String selectOrdersByIds(int count) {
+        return SELECT_ORDERS_WITH_DETAILS + "WHERE o.id IN (" + String.join(",", Collections.nCopies(count, "?")) + ") ORDER BY o.id;";
+    }
+
+    /**
+     * @param count the number of drug {@code ID}s.
+     * @return the query selecting the stock of {@code count} drugs.
+     */
+    static String selectStock(int count) {
+        return "SELECT id, in_stock FROM drugs WHERE id IN (" + String.join(",", Collections.nCopies(count, "?")) + ");";
+    }
+
+    /**
+     * Builds the query selecting a page of {@link Order}s with their details.
+     * @param params receives the parameters of the query, in order.
+     */
+    static String selectOrderPage(Integer afterId, int limit, OrderFilter filter, List<Object> params) {
+        var conditions = new StringBuilder("WHERE id > ?");
+        params.add(afterId == null ? 0 : afterId);
+        appendFilterConditions(filter, conditions, params);
+        params.add(Math.max(0, Math.min(limit, Constants.MAX_PAGE_SIZE)));
+
+        if (!includesArchive(filter)) {
+            var page = "SELECT id, ordered_by, delivered, ordered_at, delivered_At, version FROM orders " + conditions + " ORDER BY id LIMIT ?";
+            return ORDER_WITH_DETAILS_COLUMNS + "FROM (" + page + ") o LEFT JOIN order_details d ON d.order_id = o.id ORDER BY o.id;";
+        }
+
+        // Every order is joined with the details of its own database only, so both joins use their order_id index
+        // instead of scanning a union of both detail tables.
+        var page = "SELECT id, ordered_by, delivered, ordered_at, delivered_At, version, archived FROM " + ALL_ORDERS + " " + conditions + " ORDER BY id LIMIT ?";
+        return ORDER_WITH_ANY_DETAILS_COLUMNS + "FROM (" + page + ") o " +
+                "LEFT JOIN main.order_details d ON d.order_id = o.id AND NOT o.archived " +
+                "LEFT JOIN archive.order_details a ON a.order_id = o.id AND o.archived ORDER BY o.id;";
+    }
+
+    /**
+     * Builds the query selecting the matching {@link Order}s joined with the names of the users who placed them.
+     * @param limit the maximum number of summaries, or {@code null} for all of them.
+     * @param params receives the parameters of the query, in order.
+     */
+    static String selectOrderSummaries(Integer afterId, Integer limit, OrderFilter filter, List<Object> params) {
+        var conditions = new StringBuilder("WHERE id > ?");
+        params.add(afterId == null ? 0 : afterId);
+        appendFilterConditions(filter, conditions, params);
+        if (limit != null) {
+            params.add(limit);
+        }
+
+        var matching = "SELECT id, ordered_by, delivered, ordered_at, delivered_At FROM " + ordersSource(filter) + " " + conditions + " ORDER BY id" + (limit != null ? " LIMIT ?" : "");
+        return "SELECT o.id, COALESCE(u.firstName || ' ' || u.lastName, CAST(o.ordered_by AS TEXT)), o.delivered, o.ordered_at, o.delivered_At " +
+                "FROM (" + matching + ") o LEFT JOIN users u ON u.id = o.ordered_by ORDER BY o.id;";
     }
 }
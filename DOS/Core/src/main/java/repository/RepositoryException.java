@@ -0,0 +1,10 @@
+package repository;
+
+/**
+ * Thrown when the database could not be read, where an empty result would be mistaken for no stored entities.
+ */
+public class RepositoryException extends RuntimeException {
+    public RepositoryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -7,14 +7,23 @@ import domain.validation.UserValidator;
 import domain.validation.ValidationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import utils.Constants;
+import utils.JdbcStreams;
 import utils.JdbcUtils;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.stream.Stream;
 
 public class UserRepository implements IUserRepository {
     private final JdbcUtils dbUtils;
@@ -22,11 +31,22 @@ public class UserRepository implements IUserRepository {
 
     private static final Logger _logger = LogManager.getLogger();
 
+    // The hot queries, package-private so their query plans are checked against the indexes by TestQueryPlans.
+    static final String SELECT_USER_BY_ID = "SELECT * FROM users WHERE id=?;";
+    static final String SELECT_USER_BY_USERNAME = "SELECT * FROM users WHERE username=?;";
+    static final String UPDATE_USER = "UPDATE users SET username=?, firstName=?, lastName=?, encryptedPassword=?, salt=?, userType=?, email=?,nextPasswordChange=?, version=version+1 WHERE id=? AND version=?;";
+    static final String DELETE_USER = "DELETE FROM users WHERE id=?;";
+
     public UserRepository(String jdbcUrl) {
+        this(JdbcUtils.propertiesFor(jdbcUrl));
+    }
+
+    /**
+     * @param props the database properties, see {@link JdbcUtils} and {@link utils.StorageProfile}.
+     */
+    public UserRepository(Properties props) {
         _logger.info("Initializing User Repository.");
 
-        var props = new Properties();
-        props.setProperty("jdbc.url", jdbcUrl);
         dbUtils = new JdbcUtils(props);
         validator = new UserValidator();
     }
@@ -35,8 +55,7 @@ public class UserRepository implements IUserRepository {
     public Optional<User> getById(Integer id) {
         _logger.traceEntry("Getting User with ID: {}.", id);
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("SELECT * FROM users WHERE id=?;")) {
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_USER_BY_ID)) {
             statement.setInt(1, id);
             try (var result = statement.executeQuery()) {
                 if (!result.next()) {
@@ -56,13 +75,45 @@ public class UserRepository implements IUserRepository {
         }
     }
 
+    @Override
+    public Map<Integer, User> getByIds(Collection<Integer> ids) {
+        _logger.traceEntry("Getting Users with IDs: {}.", ids);
+
+        var found = new LinkedHashMap<Integer, User>();
+        var distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+
+        try (var con = dbUtils.getReadOnlyConnection()) {
+            for (var from = 0; from < distinctIds.size(); from += Constants.MAX_IDS_PER_QUERY) {
+                var chunk = distinctIds.subList(from, Math.min(from + Constants.MAX_IDS_PER_QUERY, distinctIds.size()));
+
+                try (var statement = con.prepareStatement(selectUsersByIds(chunk.size()))) {
+                    for (var i = 0; i < chunk.size(); i++) {
+                        statement.setInt(i + 1, chunk.get(i));
+                    }
+                    try (var result = statement.executeQuery()) {
+                        while (result.next()) {
+                            var user = generateUserFromResult(result);
+                            found.put(user.getId(), user);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException | IndexOutOfBoundsException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(new LinkedHashMap<>());
+        }
+
+        _logger.traceExit("Found {} users.", found.size());
+        return found;
+    }
+
     @Override
     public List<User> getAll() {
         _logger.traceEntry("Getting all users.");
 
         var finalList = new ArrayList<User>();
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("SELECT * FROM users;")) {
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement("SELECT * FROM users;")) {
             try (var result = statement.executeQuery()) {
                 while (result.next()) {
                     var user = generateUserFromResult(result);
@@ -80,6 +131,19 @@ public class UserRepository implements IUserRepository {
         return finalList;
     }
 
+    @Override
+    public Stream<User> stream(int fetchSize) {
+        _logger.traceEntry("Streaming all users.");
+
+        try {
+            return _logger.traceExit(JdbcStreams.stream(dbUtils.getReadOnlyConnection(), "SELECT * FROM users;", fetchSize, this::generateUserFromResult));
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(Stream.empty());
+        }
+    }
+
     @Override
     public Optional<User> add(User entity) throws ValidationException, IllegalArgumentException {
         _logger.traceEntry("Adding User to repo.");
@@ -99,8 +163,7 @@ public class UserRepository implements IUserRepository {
             throw _logger.traceExit(ex);
         }
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("INSERT INTO users(username, firstName, lastName, encryptedPassword, salt, userType, email, nextPasswordChange) VALUES (?,?,?,?,?,?,?,?);")) {
+        try (var con = dbUtils.getConnection(); var statement = con.prepareStatement("INSERT INTO users(username, firstName, lastName, encryptedPassword, salt, userType, email, nextPasswordChange) VALUES (?,?,?,?,?,?,?,?);", Statement.RETURN_GENERATED_KEYS)) {
             statement.setString(1, entity.getUserName());
             statement.setString(2, entity.getFirstName());
             statement.setString(3, entity.getLastName());
@@ -112,12 +175,11 @@ public class UserRepository implements IUserRepository {
 
             var result = statement.executeUpdate();
             if (result == 1) {
-                try (var extraStatement = con.prepareStatement("SELECT seq FROM sqlite_sequence WHERE name='users';")) {
-                    try(var extraResult = extraStatement.executeQuery()) {
-                        extraResult.next();
-                        var storedId = extraResult.getInt(1);
-                        entity.setId(storedId);
-                    }
+                try (var keys = statement.getGeneratedKeys()) {
+                    keys.next();
+                    var storedId = keys.getInt(1);
+                    entity.setId(storedId);
+                    entity.setVersion(0);
                 }
                 _logger.traceExit("User added to repo.");
 
@@ -145,11 +207,8 @@ public class UserRepository implements IUserRepository {
             return _logger.traceExit(Optional.empty());
         }
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("DELETE FROM users WHERE id=?;")) {
-            statement.setInt(1, id);
-
-            var result = statement.executeUpdate();
+        try {
+            var result = deleteRow(id);
             if (result == 1) {
                 _logger.traceExit("User removed.");
 
@@ -167,7 +226,7 @@ public class UserRepository implements IUserRepository {
     }
 
     @Override
-    public Optional<User> update(User entity) throws ValidationException, IllegalArgumentException {
+    public Optional<User> update(User entity) throws ValidationException, IllegalArgumentException, VersionConflictException {
         _logger.traceEntry("Updating User.");
 
         if (entity == null) {
@@ -193,24 +252,14 @@ public class UserRepository implements IUserRepository {
             return _logger.traceExit(Optional.empty());
         }
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("UPDATE users SET username=?, firstName=?, lastName=?, encryptedPassword=?, salt=?, userType=?, email=?,nextPasswordChange=? WHERE id=?;")) {
-            statement.setString(1, entity.getUserName());
-            statement.setString(2, entity.getFirstName());
-            statement.setString(3, entity.getLastName());
-            statement.setString(4, entity.getEncryptedPassword());
-            statement.setString(5, entity.getSalt());
-            statement.setInt(6, entity.getUserType().toDatabaseRepresentation());
-            statement.setString(7, entity.getEmail());
-            statement.setDate(8, entity.getNextPasswordChange());
-            statement.setInt(9, entity.getId());
-
-            var result = statement.executeUpdate();
+        try {
+            var result = updateRow(entity);
             if (result == 1) {
                 _logger.traceExit("User with ID {} updated.", entity.getId());
 
                 return oldMatch;
             } else {
+                checkVersionConflict(entity);
                 _logger.error("No User with ID: {}.", entity.getId());
 
                 return _logger.traceExit(Optional.empty());
@@ -223,20 +272,74 @@ public class UserRepository implements IUserRepository {
     }
 
     @Override
-    public void clear() {
-        _logger.traceEntry("Clearing User repo.");
+    public boolean modify(User entity) throws ValidationException, IllegalArgumentException, VersionConflictException {
+        _logger.traceEntry("Modifying User.");
+
+        if (entity == null) {
+            _logger.error("Null User received.");
 
-        var con = dbUtils.getConnection();
+            throw _logger.traceExit(new IllegalArgumentException("Null User received."));
+        }
 
-        //noinspection SqlWithoutWhere
-        try (var statement = con.prepareStatement("DELETE FROM users;")) {
-            statement.executeUpdate();
+        try {
+            validator.validate(entity);
+        }
+        catch (ValidationException ex) {
+            _logger.error(ex);
+
+            throw _logger.traceExit(ex);
+        }
+
+        try {
+            var modified = updateRow(entity) == 1;
+            if (!modified) {
+                checkVersionConflict(entity);
+                _logger.warn("No User with ID: {}.", entity.getId());
+            }
+
+            return _logger.traceExit(modified);
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(false);
+        }
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        _logger.traceEntry("Deleting User with ID: {}.", id);
+
+        try {
+            var deleted = deleteRow(id) == 1;
+            if (!deleted) {
+                _logger.warn("No User with ID: {}.", id);
+            }
+
+            return _logger.traceExit(deleted);
         } catch (SQLException ex) {
             _logger.error(ex);
+
+            return _logger.traceExit(false);
         }
+    }
+
+    @Override
+    public void clear() {
+        _logger.traceEntry("Clearing User repo.");
 
-        try (var statement = con.prepareStatement("UPDATE SQLITE_SEQUENCE SET SEQ=0 WHERE NAME='users';")) {
-            statement.executeUpdate();
+        try (var con = dbUtils.getConnection()) {
+            //noinspection SqlWithoutWhere
+            try (var statement = con.prepareStatement("DELETE FROM users;")) {
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
+
+            try (var statement = con.prepareStatement("UPDATE SQLITE_SEQUENCE SET SEQ=0 WHERE NAME='users';")) {
+                statement.executeUpdate();
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
         } catch (SQLException ex) {
             _logger.error(ex);
         }
@@ -248,8 +351,7 @@ public class UserRepository implements IUserRepository {
     public Optional<User> getByUsername(String username) {
         _logger.traceEntry("Getting User with user name: {}.", username);
 
-        var con = dbUtils.getConnection();
-        try (var statement = con.prepareStatement("SELECT * FROM users WHERE username=?;")) {
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement(SELECT_USER_BY_USERNAME)) {
             statement.setString(1, username);
             try (var result = statement.executeQuery()) {
                 if (!result.next()) {
@@ -269,6 +371,57 @@ public class UserRepository implements IUserRepository {
         }
     }
 
+    /**
+     * Writes every column of a {@link User} with a single statement, without reading it first.
+     * The update only applies if the stored version is still the one of the given {@link User}, and increments it.
+     * @return the number of updated rows; 0 if no {@link User} with the same {@code ID} and version is stored.
+     */
+    private int updateRow(User entity) throws SQLException {
+        try (var con = dbUtils.getConnection(); var statement = con.prepareStatement(UPDATE_USER)) {
+            statement.setString(1, entity.getUserName());
+            statement.setString(2, entity.getFirstName());
+            statement.setString(3, entity.getLastName());
+            statement.setString(4, entity.getEncryptedPassword());
+            statement.setString(5, entity.getSalt());
+            statement.setInt(6, entity.getUserType().toDatabaseRepresentation());
+            statement.setString(7, entity.getEmail());
+            statement.setDate(8, entity.getNextPasswordChange());
+            statement.setInt(9, entity.getId());
+            statement.setInt(10, entity.getVersion());
+
+            var result = statement.executeUpdate();
+            if (result == 1) {
+                entity.setVersion(entity.getVersion() + 1);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Tells a stale {@link User} apart from a missing one after a compare-and-set update matched no row.
+     * @throws VersionConflictException if the {@link User} is stored with another version.
+     */
+    private void checkVersionConflict(User entity) throws VersionConflictException {
+        var stored = getById(entity.getId());
+        if (stored.isPresent()) {
+            _logger.warn("Version conflict for User with ID: {}.", entity.getId());
+
+            throw new VersionConflictException("User", entity.getId(), entity.getVersion(), stored.get().getVersion());
+        }
+    }
+
+    /**
+     * @return the number of deleted rows; 0 if no {@link User} with the given {@code ID} is stored.
+     */
+    private int deleteRow(Integer id) throws SQLException {
+        try (var con = dbUtils.getConnection(); var statement = con.prepareStatement(DELETE_USER)) {
+            statement.setInt(1, id);
+
+            return statement.executeUpdate();
+        }
+    }
+
     private User generateUserFromResult(ResultSet result) throws SQLException, IndexOutOfBoundsException {
         _logger.info("Generating User from result.");
 
@@ -281,6 +434,7 @@ public class UserRepository implements IUserRepository {
         var resultUserType = UserType.fromDatabaseRepresentation(result.getInt(7));
         var resultEmail = result.getString(8);
         var resultNextPasswordChange = result.getDate(9);
+        var resultVersion = result.getInt("version");
 
         var user = new User();
         user.setId(resultId);
@@ -292,7 +446,16 @@ public class UserRepository implements IUserRepository {
         user.setUserType(resultUserType);
         user.setEmail(resultEmail);
         user.setNextPasswordChange(resultNextPasswordChange);
+        user.setVersion(resultVersion);
 
         return user;
     }
+
+    /**
+     * @param count the number of {@code ID}s, at most {@link Constants#MAX_IDS_PER_QUERY}.
+     * @return the query selecting the {@link User}s with {@code count} {@code ID}s, ordered by {@code ID}.
+     */
+    static String selectUsersByIds(int count) {
+        return "SELECT * FROM users WHERE id IN (" + String.join(",", Collections.nCopies(count, "?")) + ") ORDER BY id;";
+    }
 }
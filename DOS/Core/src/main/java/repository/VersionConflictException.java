@@ -0,0 +1,29 @@
+package repository;
+
+/**
+ * Thrown when an update is based on an outdated version of an entity, because someone else updated it in the meantime.
+ */
+public class VersionConflictException extends RuntimeException {
+    private final Integer expectedVersion;
+    private final Integer storedVersion;
+
+    /**
+     * @param entityName the type of the entity.
+     * @param id the {@code ID} of the entity.
+     * @param expectedVersion the version the update was based on.
+     * @param storedVersion the version that is stored.
+     */
+    public VersionConflictException(String entityName, Object id, Integer expectedVersion, Integer storedVersion) {
+        super(entityName + " with ID: " + id + " was changed by someone else (version " + expectedVersion + " was expected, but " + storedVersion + " is stored).");
+        this.expectedVersion = expectedVersion;
+        this.storedVersion = storedVersion;
+    }
+
+    public Integer getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public Integer getStoredVersion() {
+        return storedVersion;
+    }
+}
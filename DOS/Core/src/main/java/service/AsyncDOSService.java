@@ -0,0 +1,102 @@
+package service;
+
+import domain.dto.ChangeSet;
+import domain.dto.DrugDTO;
+import domain.dto.OrderDTO;
+import domain.dto.OrderFilter;
+import domain.models.Drug;
+import domain.models.Order;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import utils.AsyncUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Makes the calls to an {@link IDOSService} on a dedicated executor, so the calling thread, such as the JavaFX thread,
+ * is not blocked while they wait for the server, and independent calls run in parallel.
+ */
+public class AsyncDOSService implements IAsyncDOSService, AutoCloseable {
+    private final IDOSService service;
+    private final ExecutorService executor;
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    /**
+     * @param threads the maximum number of calls running at the same time.
+     */
+    public AsyncDOSService(IDOSService service, int threads) {
+        this(service, AsyncUtils.newDaemonExecutor("dos-service-call", threads));
+    }
+
+    public AsyncDOSService(IDOSService service, ExecutorService executor) {
+        _logger.info("Initializing Async DOS Service.");
+
+        this.service = service;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<List<DrugDTO>> getAvailableDrugs() {
+        return CompletableFuture.supplyAsync(service::getAvailableDrugs, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<DrugDTO>> searchDrugs(String query, int limit) {
+        return CompletableFuture.supplyAsync(() -> service.searchDrugs(query, limit), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<OrderDTO>> getOrders() {
+        return CompletableFuture.supplyAsync(service::getOrders, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<OrderDTO>> getOrdersPage(Integer afterId, int limit, OrderFilter filter) {
+        return CompletableFuture.supplyAsync(() -> service.getOrdersPage(afterId, limit, filter), executor);
+    }
+
+    @Override
+    public CompletableFuture<Order> getOrderById(Integer orderId) {
+        return CompletableFuture.supplyAsync(() -> service.getOrderById(orderId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Drug>> getDrugsByIds(Collection<Integer> drugIds) {
+        return CompletableFuture.supplyAsync(() -> service.getDrugsByIds(drugIds), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> placeOrder(Order order) {
+        return CompletableFuture.supplyAsync(() -> service.placeOrder(order), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> completeOrder(Integer orderId) {
+        return CompletableFuture.runAsync(() -> service.completeOrder(orderId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> cancelOrder(Integer orderId) {
+        return CompletableFuture.runAsync(() -> service.cancelOrder(orderId), executor);
+    }
+
+    @Override
+    public CompletableFuture<ChangeSet> getChangesSince(long version) {
+        return CompletableFuture.supplyAsync(() -> service.getChangesSince(version), executor);
+    }
+
+    /**
+     * Stops accepting calls; the calls already submitted still run.
+     */
+    @Override
+    public void close() {
+        _logger.info("Closing Async DOS Service.");
+
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,40 @@
+package service;
+
+import domain.dto.ChangeSet;
+import domain.dto.DrugDTO;
+import domain.dto.OrderDTO;
+import domain.dto.OrderFilter;
+import domain.models.Drug;
+import domain.models.Order;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of the {@link IDOSService} calls the client makes while the user works.
+ * Every method returns at once with a {@link CompletableFuture} completed with the result of the matching
+ * {@link IDOSService} method, or completed exceptionally with the exception it threw.
+ */
+public interface IAsyncDOSService {
+    CompletableFuture<List<DrugDTO>> getAvailableDrugs();
+
+    CompletableFuture<List<DrugDTO>> searchDrugs(String query, int limit);
+
+    CompletableFuture<List<OrderDTO>> getOrders();
+
+    CompletableFuture<List<OrderDTO>> getOrdersPage(Integer afterId, int limit, OrderFilter filter);
+
+    CompletableFuture<Order> getOrderById(Integer orderId);
+
+    CompletableFuture<Map<Integer, Drug>> getDrugsByIds(Collection<Integer> drugIds);
+
+    CompletableFuture<Boolean> placeOrder(Order order);
+
+    CompletableFuture<Void> completeOrder(Integer orderId);
+
+    CompletableFuture<Void> cancelOrder(Integer orderId);
+
+    CompletableFuture<ChangeSet> getChangesSince(long version);
+}
@@ -2,7 +2,32 @@ package service;
 
 import java.io.Serializable;
 import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
 
+/**
+ * Callbacks the server makes to a logged in client when orders or stock change.
+ * Events raised in a burst are merged, so each call can carry several {@code ID}s.
+ * The calls are made on a server thread that must not be held up: a client that is slow to return is disconnected.
+ */
 public interface IClientObserver extends Serializable, Remote {
+    /**
+     * @param orderIds the {@code ID}s of the placed orders.
+     */
+    void ordersPlaced(List<Integer> orderIds) throws RemoteException;
 
+    /**
+     * @param orderIds the {@code ID}s of the orders marked as delivered.
+     */
+    void ordersCompleted(List<Integer> orderIds) throws RemoteException;
+
+    /**
+     * @param orderIds the {@code ID}s of the cancelled orders.
+     */
+    void ordersCancelled(List<Integer> orderIds) throws RemoteException;
+
+    /**
+     * @param drugIds the {@code ID}s of the drugs whose stock changed.
+     */
+    void stockChanged(List<Integer> drugIds) throws RemoteException;
 }
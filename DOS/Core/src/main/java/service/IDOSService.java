@@ -1,12 +1,17 @@
 package service;
 
+import domain.dto.ChangeSet;
 import domain.dto.DrugDTO;
+import domain.dto.ImportReport;
 import domain.dto.OrderDTO;
+import domain.dto.OrderFilter;
 import domain.dto.UserDTO;
 import domain.models.Drug;
 import domain.models.Order;
 import domain.models.User;
+import repository.InsufficientStockException;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -21,15 +26,49 @@ public interface IDOSService {
 
     List<DrugDTO> getAvailableDrugs();
 
-    boolean placeOrder(Order order);
+    List<DrugDTO> getAvailableDrugsPage(Integer afterId, int limit);
+
+    List<DrugDTO> searchDrugs(String query, int limit);
+
+    /**
+     * Imports a drug catalog sent by the client, so the server never opens files named by a client.
+     * @param csv the catalog in CSV format, with the {@link utils.Constants#DRUG_CATALOG_HEADER} columns.
+     * @return an {@link ImportReport} with the number of imported and rejected rows, or {@code null} if the catalog could not be read.
+     */
+    ImportReport importDrugCatalog(String csv);
+
+    /**
+     * @return all stored drugs in CSV format, with the {@link utils.Constants#DRUG_CATALOG_HEADER} columns,
+     *         for the client to save, or {@code null} if the catalog could not be exported.
+     */
+    String exportDrugCatalog();
+
+    boolean placeOrder(Order order) throws InsufficientStockException;
 
     List<OrderDTO> getOrders();
 
-    boolean updateUser(User updatedUser);
+    List<OrderDTO> getOrdersPage(Integer afterId, int limit, OrderFilter filter);
+
+    /**
+     * @param updatedUser the {@link User} with its new details and the version they were read at.
+     * @return the updated {@link User}, with the version it is now stored at, or {@code null} if it could not be updated.
+     */
+    User updateUser(User updatedUser);
 
     void completeOrder(Integer orderId);
 
     void cancelOrder(Integer orderId);
 
     Order getOrderById(Integer orderId);
+
+    Map<Integer, Drug> getDrugsByIds(Collection<Integer> drugIds);
+
+    /**
+     * Gets the drugs and orders changed since a version of the change log, so clients can update their lists
+     * instead of downloading them again.
+     * Changed drugs are returned whatever their stock, and archived orders are reported as deleted.
+     * @param version the version of the last {@link ChangeSet} the client applied, or 0 for every drug and order.
+     * @return the changes, with the version to ask for the next ones with.
+     */
+    ChangeSet getChangesSince(long version);
 }
@@ -0,0 +1,54 @@
+package utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncUtils {
+    /**
+     * Creates a fixed size executor whose daemon threads do not keep the application running.
+     * @param name the prefix of the names of its threads.
+     * @param threads the number of threads.
+     * @return a new {@link ExecutorService}.
+     */
+    public static ExecutorService newDaemonExecutor(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, newDaemonThreadFactory(name));
+    }
+
+    /**
+     * Creates a fixed size executor whose daemon threads do not keep the application running,
+     * and which rejects tasks with a {@link java.util.concurrent.RejectedExecutionException} once its queue is full.
+     * @param name the prefix of the names of its threads.
+     * @param threads the number of threads.
+     * @param queueCapacity the maximum number of tasks waiting for a thread.
+     * @return a new {@link ExecutorService}.
+     */
+    public static ExecutorService newBoundedDaemonExecutor(String name, int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), newDaemonThreadFactory(name));
+    }
+
+    /**
+     * Creates a single threaded scheduler whose daemon thread does not keep the application running.
+     * @param name the prefix of the name of its thread.
+     * @return a new {@link ScheduledExecutorService}.
+     */
+    public static ScheduledExecutorService newDaemonScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(newDaemonThreadFactory(name));
+    }
+
+    private static ThreadFactory newDaemonThreadFactory(String name) {
+        var count = new AtomicInteger();
+
+        return r -> {
+            var thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
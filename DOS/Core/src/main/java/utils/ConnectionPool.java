@@ -0,0 +1,441 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of database {@link Connection}s.
+ * Borrowed connections are handed out as proxies and go back to the pool when they are closed,
+ * so callers should always borrow them with try-with-resources.
+ */
+public class ConnectionPool implements AutoCloseable {
+    /**
+     * Creates the physical connections held by the pool.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeout;
+    private final long leakThreshold;
+    private final long idleTimeout;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle;
+    private final Set<PooledConnection> borrowed;
+    private final AtomicInteger openConnections;
+    private final AtomicLong preparedStatements;
+    private final AtomicLong statementCacheHits;
+    private final AtomicLong statementCacheMisses;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    private ConnectionPool(Builder builder, ConnectionFactory factory) {
+        _logger.info("Initializing connection pool '{}' (min: {}, max: {}).", builder._name, builder._minSize, builder._maxSize);
+
+        this.name = builder._name;
+        this.factory = factory;
+        this.minSize = builder._minSize;
+        this.maxSize = builder._maxSize;
+        this.borrowTimeout = builder._borrowTimeout;
+        this.leakThreshold = builder._leakThreshold;
+        this.idleTimeout = builder._idleTimeout;
+        this.statementCacheSize = builder._statementCacheSize;
+
+        permits = new Semaphore(maxSize, true);
+        idle = new LinkedBlockingDeque<>();
+        borrowed = ConcurrentHashMap.newKeySet();
+        openConnections = new AtomicInteger();
+        preparedStatements = new AtomicLong();
+        statementCacheHits = new AtomicLong();
+        statementCacheMisses = new AtomicLong();
+
+        for (var i = 0; i < minSize; i++) {
+            try {
+                idle.offerLast(new PooledConnection(openPhysicalConnection()));
+            } catch (SQLException ex) {
+                _logger.error(ex);
+                break;
+            }
+        }
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "connection-pool-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        var interval = Math.max(1000L, Math.min(idleTimeout, leakThreshold) / 2);
+        housekeeper.scheduleWithFixedDelay(() -> {
+            detectLeaks();
+            evictIdleConnections();
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if no idle connection is available and the pool is not full.
+     * @return a {@link Connection} that is returned to the pool when closed.
+     * @throws SQLException if the pool is closed, no connection became available in time or a new connection could not be opened.
+     */
+    public Connection borrow() throws SQLException {
+        _logger.traceEntry("Borrowing connection from pool '{}'.", name);
+
+        if (closed) {
+            throw _logger.traceExit(new SQLException("Connection pool '" + name + "' is closed."));
+        }
+
+        try {
+            if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                _logger.error("Timed out waiting for a connection from pool '{}'.", name);
+
+                throw _logger.traceExit(new SQLTimeoutException("Timed out waiting for a connection from pool '" + name + "'."));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+
+            throw _logger.traceExit(new SQLException("Interrupted while waiting for a connection.", ex));
+        }
+
+        try {
+            var pooled = idle.pollFirst();
+            while (pooled != null && pooled.physical.isClosed()) {
+                discard(pooled);
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                pooled = new PooledConnection(openPhysicalConnection());
+            }
+
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowSite = new Exception("Connection borrowed here.");
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+
+            return _logger.traceExit(pooled.newHandle());
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            _logger.error(ex);
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Logs every connection that has been borrowed for longer than the leak threshold.
+     * @return the number of connections currently considered leaked.
+     */
+    public int detectLeaks() {
+        var now = System.currentTimeMillis();
+        var leaked = 0;
+
+        for (var pooled : borrowed) {
+            if (now - pooled.borrowedAt > leakThreshold) {
+                leaked++;
+                if (!pooled.leakReported) {
+                    pooled.leakReported = true;
+                    _logger.warn("Connection from pool '{}' borrowed {} ms ago was not returned. {}", name, now - pooled.borrowedAt, pooled.borrowSite);
+                }
+            }
+        }
+
+        return leaked;
+    }
+
+    /**
+     * Closes idle connections that have not been used for longer than the idle timeout, keeping at least the minimum pool size open.
+     * @return the number of evicted connections.
+     */
+    public int evictIdleConnections() {
+        var now = System.currentTimeMillis();
+        var evicted = 0;
+
+        for (Iterator<PooledConnection> it = idle.descendingIterator(); it.hasNext(); ) {
+            var pooled = it.next();
+            if (openConnections.get() <= minSize) {
+                break;
+            }
+            if (now - pooled.returnedAt > idleTimeout && idle.removeLastOccurrence(pooled)) {
+                discard(pooled);
+                evicted++;
+            }
+        }
+
+        if (evicted > 0) {
+            _logger.info("Evicted {} idle connections from pool '{}'.", evicted, name);
+        }
+
+        return evicted;
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getOpenCount() {
+        return openConnections.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of statements requested from connections borrowed from this pool, whether or not they were cached.
+     */
+    public long getPreparedStatementCount() {
+        return preparedStatements.get();
+    }
+
+    /**
+     * @return the number of statements served from the statement caches of the pooled connections.
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * @return the number of statements that had to be prepared by the database.
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    @Override
+    public void close() {
+        _logger.info("Closing connection pool '{}'.", name);
+
+        closed = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private Connection openPhysicalConnection() throws SQLException {
+        var connection = factory.create();
+        if (connection == null) {
+            throw new SQLException("Could not open a connection for pool '" + name + "'.");
+        }
+        openConnections.incrementAndGet();
+
+        return connection;
+    }
+
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                discard(pooled);
+            } else {
+                if (!pooled.physical.getAutoCommit()) {
+                    _logger.warn("Connection returned to pool '{}' with an open transaction, rolling back.", name);
+
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                pooled.returnedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        openConnections.decrementAndGet();
+        if (pooled.statementCache != null) {
+            pooled.statementCache.clear();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException ex) {
+            _logger.error(ex);
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long borrowedAt;
+        private volatile long returnedAt;
+        private volatile Exception borrowSite;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementCacheHits, statementCacheMisses)
+                    : null;
+            this.returnedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * Creates a new proxy for the current borrower, so a stale handle can not touch the connection after it was returned.
+         */
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * Forwards calls to the physical connection until the borrower closes it.
+     */
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + name + "] " + pooled.physical;
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection was already returned to pool '" + name + "'.");
+                    }
+                    if (method.getName().startsWith("prepare")) {
+                        preparedStatements.incrementAndGet();
+                    }
+                    if (pooled.statementCache != null && method.getName().equals("prepareStatement")) {
+                        if (args.length == 1) {
+                            return pooled.statementCache.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+                        }
+                        if (args.length == 2 && args[1] instanceof Integer) {
+                            return pooled.statementCache.prepare((String) args[0], (Integer) args[1]);
+                        }
+                    }
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    public static class Builder {
+        private String _name;
+        private Integer _minSize;
+        private Integer _maxSize;
+        private Long _borrowTimeout;
+        private Long _leakThreshold;
+        private Long _idleTimeout;
+        private Integer _statementCacheSize;
+
+        public Builder() {
+            _name = "default";
+            _minSize = 1;
+            _maxSize = 10;
+            _borrowTimeout = 30000L;
+            _leakThreshold = 60000L;
+            _idleTimeout = 300000L;
+            _statementCacheSize = 64;
+        }
+
+        public Builder withName(String name) {
+            _name = name;
+            return this;
+        }
+
+        public Builder withMinSize(Integer minSize) {
+            _minSize = minSize;
+            return this;
+        }
+
+        public Builder withMaxSize(Integer maxSize) {
+            _maxSize = maxSize;
+            return this;
+        }
+
+        public Builder withBorrowTimeout(Long borrowTimeout) {
+            _borrowTimeout = borrowTimeout;
+            return this;
+        }
+
+        public Builder withLeakThreshold(Long leakThreshold) {
+            _leakThreshold = leakThreshold;
+            return this;
+        }
+
+        public Builder withIdleTimeout(Long idleTimeout) {
+            _idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * @param statementCacheSize the number of prepared statements cached per connection, or 0 to disable the cache.
+         */
+        public Builder withStatementCacheSize(Integer statementCacheSize) {
+            _statementCacheSize = statementCacheSize;
+            return this;
+        }
+
+        public ConnectionPool build(ConnectionFactory factory) {
+            if (_maxSize < 1 || _minSize < 0 || _minSize > _maxSize) {
+                throw new IllegalArgumentException("Invalid pool size: min " + _minSize + ", max " + _maxSize + ".");
+            }
+
+            return new ConnectionPool(this, factory);
+        }
+    }
+}
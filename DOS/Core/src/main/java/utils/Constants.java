@@ -6,4 +6,23 @@ public class Constants {
     public static final Long DISTANCE_BETWEEN_PASSWORD_CHANGES = 6 * 2629800000L; // 6 Months
     @SuppressWarnings("PointlessArithmeticExpression")
     public static final Long DEFAULT_DRUG_DELIVERY_ETA = 1 * 86400000L; // 1 Day
+    public static final Integer MAX_PAGE_SIZE = 500;
+    public static final Integer MAX_IDS_PER_QUERY = 500;
+    public static final Integer DRUG_SEARCH_LIMIT = 50;
+    public static final Integer DEFAULT_FETCH_SIZE = 1000;
+    public static final Integer DEFAULT_IMPORT_BATCH_SIZE = 500;
+    public static final Integer MAX_REPORTED_IMPORT_ERRORS = 100;
+    public static final Integer DEFAULT_WRITE_BATCH_SIZE = 64;
+    public static final Integer MAX_WRITE_ATTEMPTS = 3;
+    public static final Integer DEFAULT_ASYNC_THREADS = 4;
+    public static final Long DEFAULT_ARCHIVE_AGE = 30 * 86400000L; // 30 Days
+    public static final Integer DEFAULT_ARCHIVE_CHUNK_SIZE = 200;
+    public static final Integer DEFAULT_NOTIFIER_THREADS = 2;
+    public static final Integer NOTIFIER_QUEUE_CAPACITY = 1000;
+    public static final Integer MAX_PENDING_NOTIFICATIONS = 1000;
+    public static final Long SLOW_OBSERVER_THRESHOLD = 2000L; // 2 Seconds
+    public static final Long NOTIFIER_RETRY_DELAY = 100L; // 100 Milliseconds
+    public static final Long CALLBACK_RESPONSE_TIMEOUT = 5000L; // 5 Seconds
+    public static final Long SNAPSHOT_MAX_AGE = 10000L; // 10 Seconds
+    public static final String DRUG_CATALOG_HEADER = "name,description,in_stock";
 }
@@ -0,0 +1,76 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes single-line CSV records, with fields optionally quoted by {@code "} and quotes escaped by doubling them.
+ */
+public class CsvUtils {
+    private CsvUtils() {
+    }
+
+    /**
+     * Splits a CSV record into its fields.
+     * @param line the record.
+     * @return the unquoted fields of the record.
+     * @throws IllegalArgumentException if a quoted field is not terminated.
+     */
+    public static List<String> parseLine(String line) throws IllegalArgumentException {
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        var quoted = false;
+
+        for (var i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Joins fields into a CSV record, quoting the ones that contain separators, quotes or line breaks.
+     * @param fields the fields of the record.
+     * @return the record, without a line terminator.
+     */
+    public static String formatLine(Object... fields) {
+        var line = new StringBuilder();
+
+        for (var i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+
+            var field = fields[i] == null ? "" : fields[i].toString();
+            if (field.contains(",") || field.contains("\"") || field.contains("\n") || field.contains("\r")) {
+                line.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(field);
+            }
+        }
+
+        return line.toString();
+    }
+}
@@ -0,0 +1,165 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns query results into lazy {@link Stream}s that read rows only as the stream is consumed.
+ * A stream keeps its connection, statement and result set open until it is closed or fully consumed,
+ * so callers should always close it, preferably with a try-with-resources block.
+ */
+public class JdbcStreams {
+    /**
+     * Reads the element that starts at the current row of a result.
+     * @param <T> the type of the read element.
+     */
+    @FunctionalInterface
+    public interface RowReader<T> {
+        T read(ResultSet result) throws SQLException;
+    }
+
+    /**
+     * Adds the current row of a result to the element read from the previous rows, if the row belongs to it.
+     * @param <T> the type of the read element.
+     */
+    @FunctionalInterface
+    public interface RowMerger<T> {
+        /**
+         * @param current the element read so far.
+         * @param result the result, positioned on the row to merge.
+         * @return {@code true} if the row was merged into {@code current}, {@code false} if it starts a new element.
+         */
+        boolean merge(T current, ResultSet result) throws SQLException;
+    }
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    private JdbcStreams() {
+    }
+
+    /**
+     * Runs a query and streams its rows, one element per row.
+     * @param con the connection to run the query on, closed when the stream is closed.
+     * @param sql the query.
+     * @param fetchSize the number of rows the driver should fetch at a time.
+     * @param reader maps a row to an element.
+     * @param <T> the type of the elements.
+     * @return a lazy {@link Stream} of the elements.
+     * @throws SQLException if the query could not be run, in which case the connection is closed.
+     */
+    public static <T> Stream<T> stream(Connection con, String sql, int fetchSize, RowReader<T> reader) throws SQLException {
+        return stream(con, sql, fetchSize, reader, null);
+    }
+
+    /**
+     * Runs a query and streams its rows, merging consecutive rows that belong to the same element.
+     * @param con the connection to run the query on, closed when the stream is closed.
+     * @param sql the query; rows of the same element must be consecutive.
+     * @param fetchSize the number of rows the driver should fetch at a time.
+     * @param reader maps the first row of an element to the element.
+     * @param merger merges the following rows into the element, or {@code null} if every row is an element.
+     * @param <T> the type of the elements.
+     * @return a lazy {@link Stream} of the elements.
+     * @throws SQLException if the query could not be run, in which case the connection is closed.
+     */
+    public static <T> Stream<T> stream(Connection con, String sql, int fetchSize, RowReader<T> reader, RowMerger<T> merger) throws SQLException {
+        _logger.traceEntry("Streaming query: {}", sql);
+
+        PreparedStatement statement = null;
+        try {
+            statement = con.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            var result = statement.executeQuery();
+
+            var cursor = new Cursor<>(con, statement, result, reader, merger);
+            return _logger.traceExit(StreamSupport.stream(cursor, false).onClose(cursor::close));
+        } catch (SQLException ex) {
+            if (statement != null) {
+                statement.close();
+            }
+            con.close();
+
+            throw _logger.traceExit(ex);
+        }
+    }
+
+    private static class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Connection con;
+        private final PreparedStatement statement;
+        private final ResultSet result;
+        private final RowReader<T> reader;
+        private final RowMerger<T> merger;
+        private boolean onUnreadRow;
+        private boolean closed;
+
+        private Cursor(Connection con, PreparedStatement statement, ResultSet result, RowReader<T> reader, RowMerger<T> merger) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.con = con;
+            this.statement = statement;
+            this.result = result;
+            this.reader = reader;
+            this.merger = merger;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+
+            T current;
+            try {
+                if (!onUnreadRow && !result.next()) {
+                    close();
+
+                    return false;
+                }
+
+                current = reader.read(result);
+                onUnreadRow = false;
+                if (merger != null) {
+                    while (result.next()) {
+                        if (!merger.merge(current, result)) {
+                            onUnreadRow = true;
+                            break;
+                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                _logger.error(ex);
+
+                close();
+                throw new IllegalStateException("Could not read the next row.", ex);
+            }
+
+            action.accept(current);
+            return true;
+        }
+
+        /**
+         * Releases the result, the statement and the connection; safe to call more than once.
+         */
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try (con; statement; result) {
+                _logger.info("Closing streamed result.");
+            } catch (SQLException ex) {
+                _logger.error(ex);
+            }
+        }
+    }
+}
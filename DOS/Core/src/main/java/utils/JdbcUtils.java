@@ -3,20 +3,51 @@ package utils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class used to get connections to the database.
+ * Connections come from pools shared by every {@link JdbcUtils} pointing to the same database,
+ * and must be closed by the caller to be returned to their pool.
+ * The database is opened in WAL journal mode, with a single writer connection and a pool of read-only readers,
+ * so reads see a consistent snapshot and do not wait for concurrent writes.
+ * Connections are set up with the {@link StorageProfile} named by {@code jdbc.profile};
+ * as the pools are shared, the properties of the first {@link JdbcUtils} created for a database are the ones used,
+ * and creating another one for the same database with a different profile fails.
+ * The pools stay open until {@link #close()} is called for the database.
+ * Every connection to a database file also has the archive database attached as {@code archive},
+ * a file next to it with the {@code -archive} suffix unless {@code jdbc.archive.path} says otherwise.
  */
 
 public class JdbcUtils {
+    /**
+     * Work done with the connection of a transaction.
+     * @param <T> the type of the result of the work.
+     */
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T execute(Connection con) throws SQLException;
+    }
 
     private final Properties jdbcProps;
-    private Connection instance = null;
+    private final StorageProfile profile;
+    private final ConnectionPool pool;
+    private final ConnectionPool readOnlyPool;
+    private final ThreadLocal<Connection> transaction;
+
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+    private static final Map<String, ConnectionPool> readOnlyPools = new ConcurrentHashMap<>();
+    private static final Map<String, StorageProfile> profiles = new ConcurrentHashMap<>();
+    private static final Map<String, ThreadLocal<Connection>> transactions = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> schemaVersions = new ConcurrentHashMap<>();
 
     private static final Logger _logger = LogManager.getLogger();
 
@@ -32,13 +63,63 @@ public class JdbcUtils {
             }
             jdbcProps.setProperty("jdbc.url", "jdbc:sqlite:" + fixedProperty.toString());
         }
+        profile = StorageProfile.fromName(jdbcProps.getProperty("jdbc.profile"));
+
+        var url = jdbcProps.getProperty("jdbc.url");
+        var openedWith = profiles.putIfAbsent(url, profile);
+        if (openedWith != null && openedWith != profile) {
+            _logger.error("Database {} is already open with the {} profile.", url, openedWith);
+
+            throw new IllegalArgumentException("Database " + url + " is already open with the " + openedWith + " profile, not " + profile + ".");
+        }
+        pool = pools.computeIfAbsent(url, u -> new ConnectionPool.Builder()
+                .withName("writer")
+                .withMinSize(getIntProperty("jdbc.pool.minSize", 1))
+                .withMaxSize(getIntProperty("jdbc.pool.maxSize", 1))
+                .withBorrowTimeout(getLongProperty("jdbc.pool.borrowTimeout", 30000L))
+                .withLeakThreshold(getLongProperty("jdbc.pool.leakThreshold", 60000L))
+                .withIdleTimeout(getLongProperty("jdbc.pool.idleTimeout", 300000L))
+                .withStatementCacheSize(getIntProperty("jdbc.statementCache.size", 64))
+                .build(() -> getNewConnection(false)));
+        readOnlyPool = readOnlyPools.computeIfAbsent(url, u -> new ConnectionPool.Builder()
+                .withName("readers")
+                .withMinSize(getIntProperty("jdbc.pool.readOnly.minSize", 0))
+                .withMaxSize(getIntProperty("jdbc.pool.readOnly.maxSize", 4))
+                .withBorrowTimeout(getLongProperty("jdbc.pool.borrowTimeout", 30000L))
+                .withLeakThreshold(getLongProperty("jdbc.pool.leakThreshold", 60000L))
+                .withIdleTimeout(getLongProperty("jdbc.pool.idleTimeout", 300000L))
+                .withStatementCacheSize(getIntProperty("jdbc.statementCache.size", 64))
+                .build(() -> getNewConnection(true)));
+        transaction = transactions.computeIfAbsent(url, u -> new ThreadLocal<>());
+        schemaVersions.computeIfAbsent(url, u -> migrateSchema());
+    }
+
+    /**
+     * Applies the pending {@link SchemaMigrator} migrations to the database.
+     * @return the schema version after migrating, or {@code null} if the migration failed and should be retried.
+     */
+    private Integer migrateSchema() {
+        _logger.traceEntry("Migrating database schema.");
+
+        var migrator = new SchemaMigrator();
+        try (var con = pool.borrow()) {
+            migrator.migrate(con);
+
+            return _logger.traceExit(migrator.getCurrentVersion(con));
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(null);
+        }
     }
 
     /**
      * Creates a new connection to the database.
+     * @param readOnly whether the connection should reject writes.
      * @return a new connection to the database.
+     * @throws SQLException if the connection could not be opened.
      */
-    private Connection getNewConnection() {
+    private Connection getNewConnection(boolean readOnly) throws SQLException {
         _logger.traceEntry("Getting new database connection.");
 
         var url = jdbcProps.getProperty("jdbc.url");
@@ -48,38 +129,237 @@ public class JdbcUtils {
         var user = jdbcProps.getProperty("jdbc.user");
         var pass = jdbcProps.getProperty("jdbc.pass");
 
-        Connection con = null;
-        try {
-            if (user != null && pass != null) {
-                con = DriverManager.getConnection(url, user, pass);
+        Connection con;
+        if (user != null && pass != null) {
+            con = DriverManager.getConnection(url, user, pass);
+        }
+        else {
+            _logger.warn("No security info found.");
+
+            con = DriverManager.getConnection(url);
+        }
+
+        var journalMode = jdbcProps.getProperty("jdbc.journalMode", profile.getJournalMode());
+        var synchronous = jdbcProps.getProperty("jdbc.synchronous", profile.getSynchronous());
+        try (var statement = con.createStatement()) {
+            statement.execute("PRAGMA busy_timeout = " + getIntProperty("jdbc.busyTimeout", profile.getBusyTimeout()) + ";");
+            statement.execute("PRAGMA cache_size = " + getIntProperty("jdbc.cacheSize", profile.getCacheSize()) + ";");
+            statement.execute("PRAGMA mmap_size = " + getLongProperty("jdbc.mmapSize", profile.getMmapSize()) + ";");
+            statement.execute("PRAGMA temp_store = " + jdbcProps.getProperty("jdbc.tempStore", profile.getTempStore()) + ";");
+            statement.execute("PRAGMA synchronous = " + synchronous + ";");
+            if (readOnly) {
+                statement.execute("PRAGMA query_only = ON;");
+            } else {
+                statement.execute("PRAGMA journal_mode = " + journalMode + ";");
             }
-            else {
-                _logger.warn("No security info found.");
 
-                con = DriverManager.getConnection(url);
+            var archivePath = getArchivePath();
+            if (archivePath != null) {
+                try (var attach = con.prepareStatement("ATTACH DATABASE ? AS archive;")) {
+                    attach.setString(1, archivePath);
+                    attach.execute();
+                }
+                statement.execute("PRAGMA archive.synchronous = " + synchronous + ";");
+                if (!readOnly) {
+                    statement.execute("PRAGMA archive.journal_mode = " + journalMode + ";");
+                    new SchemaMigrator().createArchiveSchema(con);
+                }
             }
-        } catch (SQLException e) {
-            _logger.error(e);
+        } catch (SQLException ex) {
+            con.close();
+
+            throw _logger.traceExit(ex);
         }
 
         return _logger.traceExit(con);
     }
 
     /**
-     * Retrieves or creates a new connection.
-     * @return a connection.
+     * @return the path of the archive database, or {@code null} if the database is not stored in a file.
+     */
+    private String getArchivePath() {
+        return archivePathFor(jdbcProps);
+    }
+
+    /**
+     * @param props the properties of a database, with at least {@code jdbc.url}.
+     * @return the path of the archive database attached to it, or {@code null} if the database is not stored in a file.
+     */
+    public static String archivePathFor(Properties props) {
+        var configured = props.getProperty("jdbc.archive.path");
+        if (configured != null) {
+            return configured;
+        }
+
+        var path = props.getProperty("jdbc.url").substring("jdbc:sqlite:".length());
+        var options = path.indexOf('?');
+        if (options >= 0) {
+            path = path.substring(0, options);
+        }
+        if (path.isEmpty() || path.startsWith(":memory:") || path.startsWith("file:")) {
+            return null;
+        }
+
+        var extension = path.lastIndexOf('.');
+        var directory = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return extension > directory
+                ? path.substring(0, extension) + "-archive" + path.substring(extension)
+                : path + "-archive";
+    }
+
+    /**
+     * Borrows the writer connection, waiting for it if another thread is writing.
+     * @return a pooled connection, returned to the pool when closed.
+     * @throws SQLException if no connection could be obtained.
+     */
+    public Connection getConnection() throws SQLException {
+        _logger.traceEntry("Borrowing database connection.");
+
+        var current = transaction.get();
+        if (current != null) {
+            return _logger.traceExit(current);
+        }
+
+        return _logger.traceExit(pool.borrow());
+    }
+
+    /**
+     * Borrows a reader connection, which rejects writes and reads the last committed state of the database.
+     * @return a pooled read-only connection, returned to the pool when closed.
+     * @throws SQLException if no connection could be obtained.
      */
-    public Connection getConnection() {
-        _logger.traceEntry("Getting existing database connection.");
+    public Connection getReadOnlyConnection() throws SQLException {
+        _logger.traceEntry("Borrowing read-only database connection.");
 
-        try {
-            if (instance == null || instance.isClosed()) {
-                instance = getNewConnection();
+        var current = transaction.get();
+        if (current != null) {
+            return _logger.traceExit(current);
+        }
+
+        return _logger.traceExit(readOnlyPool.borrow());
+    }
+
+    /**
+     * Runs work in a transaction that is committed if the work completes and rolled back if it throws.
+     * While the work runs, every connection requested on the same thread from a {@link JdbcUtils} for the same database
+     * is the connection of the transaction, so repository methods called by the work take part in it.
+     * If a transaction is already running on the current thread, the work joins it inside a savepoint instead.
+     * @param work the work to run.
+     * @param <T> the type of the result of the work.
+     * @return the result of the work.
+     * @throws SQLException if the work or the commit failed.
+     */
+    public <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        _logger.traceEntry("Running transaction.");
+
+        var current = transaction.get();
+        if (current != null) {
+            var savepoint = current.setSavepoint();
+            try {
+                var result = work.execute(current);
+                current.releaseSavepoint(savepoint);
+
+                return _logger.traceExit(result);
+            } catch (SQLException | RuntimeException ex) {
+                _logger.warn("Rolling back to savepoint: {}", ex.getMessage());
+
+                current.rollback(savepoint);
+                throw ex;
             }
-        } catch (SQLException e) {
-            _logger.error(e);
         }
 
-        return _logger.traceExit(instance);
+        try (var con = pool.borrow()) {
+            var shared = unclosable(con);
+            con.setAutoCommit(false);
+            transaction.set(shared);
+            try {
+                var result = work.execute(shared);
+                con.commit();
+
+                return _logger.traceExit(result);
+            } catch (SQLException | RuntimeException ex) {
+                _logger.warn("Rolling back transaction: {}", ex.getMessage());
+
+                con.rollback();
+                throw ex;
+            } finally {
+                transaction.remove();
+                con.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * @param jdbcUrl the URL of a database.
+     * @return properties holding only the URL, so the database is opened with the default settings.
+     */
+    public static Properties propertiesFor(String jdbcUrl) {
+        var props = new Properties();
+        props.setProperty("jdbc.url", jdbcUrl);
+
+        return props;
+    }
+
+    /**
+     * Closes the pools of the database and stops their housekeeping threads.
+     * Idle connections are closed at once, borrowed ones when they are returned, and further borrows fail.
+     * Every {@link JdbcUtils} of the database shares the pools, so this closes them for all of them;
+     * a {@link JdbcUtils} created afterwards opens new pools.
+     */
+    public void close() {
+        var url = jdbcProps.getProperty("jdbc.url");
+        _logger.info("Closing the connection pools of {}.", url);
+
+        if (pools.remove(url, pool)) {
+            readOnlyPools.remove(url, readOnlyPool);
+            profiles.remove(url);
+            transactions.remove(url);
+            schemaVersions.remove(url);
+        }
+        pool.close();
+        readOnlyPool.close();
+    }
+
+    public StorageProfile getProfile() {
+        return profile;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public ConnectionPool getReadOnlyPool() {
+        return readOnlyPool;
+    }
+
+    /**
+     * Wraps the connection of a transaction, so code running inside the transaction can close it like a pooled connection.
+     */
+    private static Connection unclosable(Connection con) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(con, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+    }
+
+    private int getIntProperty(String key, int defaultValue) {
+        var value = jdbcProps.getProperty(key);
+
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private long getLongProperty(String key, long defaultValue) {
+        var value = jdbcProps.getProperty(key);
+
+        return value == null ? defaultValue : Long.parseLong(value.trim());
     }
-}
\ No newline at end of file
+}
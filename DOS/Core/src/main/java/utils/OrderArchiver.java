@@ -0,0 +1,110 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import repository.IOrderRepository;
+
+import java.sql.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically moves the orders delivered longer than a maximum age ago to the archive database,
+ * so the hot order tables only hold recent orders.
+ * Orders are moved in small chunks, each in its own transaction, so writers waiting for the writer connection
+ * get it between two chunks instead of waiting for the whole run.
+ */
+public class OrderArchiver implements AutoCloseable {
+    private final IOrderRepository orderRepo;
+    private final long maxAgeMillis;
+    private final int chunkSize;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong archivedOrders;
+    private volatile boolean closed;
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    /**
+     * @param orderRepo the repository whose orders are archived.
+     * @param maxAgeMillis how long after its delivery an order is archived.
+     * @param chunkSize the maximum number of orders moved in one transaction.
+     * @param intervalMillis the time between two archiving runs, or 0 to only archive when {@link #archive()} is called.
+     */
+    public OrderArchiver(IOrderRepository orderRepo, long maxAgeMillis, int chunkSize, long intervalMillis) {
+        _logger.info("Initializing Order Archiver.");
+
+        this.orderRepo = orderRepo;
+        this.maxAgeMillis = maxAgeMillis;
+        this.chunkSize = chunkSize;
+        archivedOrders = new AtomicLong();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "dos-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::archiveQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Moves every order delivered longer than the maximum age ago to the archive, one chunk at a time.
+     * @return the number of archived orders.
+     */
+    public int archive() {
+        _logger.traceEntry("Archiving orders.");
+
+        var deliveredBefore = new Date(System.currentTimeMillis() - maxAgeMillis);
+        var archived = 0;
+        while (!closed) {
+            var moved = orderRepo.archiveOrders(deliveredBefore, chunkSize);
+            if (moved < 0) {
+                _logger.warn("Archiving stopped after {} orders, a chunk could not be moved; the next run retries it.", archived);
+                break;
+            }
+            archived += moved;
+            if (moved < chunkSize) {
+                break;
+            }
+        }
+        archivedOrders.addAndGet(archived);
+
+        _logger.traceExit("Archived {} orders.", archived);
+        return archived;
+    }
+
+    /**
+     * Stops the scheduled runs, waiting for a running one to finish its current chunk.
+     */
+    @Override
+    public void close() {
+        _logger.info("Closing Order Archiver.");
+
+        closed = true;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                _logger.warn("Archiver did not stop in time.");
+            }
+        } catch (InterruptedException ex) {
+            _logger.error(ex);
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getArchivedOrders() {
+        return archivedOrders.get();
+    }
+
+    private void archiveQuietly() {
+        try {
+            archive();
+        } catch (RuntimeException ex) {
+            _logger.error(ex);
+        }
+    }
+}
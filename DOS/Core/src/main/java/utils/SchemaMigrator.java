@@ -0,0 +1,186 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date by applying versioned migrations.
+ * The version of every applied migration is recorded in the {@code schema_version} table,
+ * so each migration runs exactly once per database.
+ */
+public class SchemaMigrator {
+    /**
+     * A numbered set of statements that move the schema from the previous version to {@code version}.
+     */
+    public static class Migration {
+        private final int version;
+        private final String description;
+        private final List<String> statements;
+
+        public Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = List.of(statements);
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public List<String> getStatements() {
+            return statements;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Add indexes for order details, order filters and available drugs.",
+                    "CREATE INDEX IF NOT EXISTS order_details_order_id_index ON order_details(order_id, drug_id, quantity);",
+                    "CREATE INDEX IF NOT EXISTS orders_ordered_by_index ON orders(ordered_by);",
+                    "CREATE INDEX IF NOT EXISTS orders_delivered_index ON orders(delivered, delivered_At);",
+                    "CREATE INDEX IF NOT EXISTS drugs_in_stock_index ON drugs(in_stock) WHERE in_stock > 0;"),
+            new Migration(2, "Add version columns for optimistic concurrency.",
+                    "ALTER TABLE users ADD COLUMN version INTEGER NOT NULL DEFAULT 0;",
+                    "ALTER TABLE drugs ADD COLUMN version INTEGER NOT NULL DEFAULT 0;",
+                    "ALTER TABLE orders ADD COLUMN version INTEGER NOT NULL DEFAULT 0;"),
+            new Migration(3, "Add a full-text index over drug names and descriptions.",
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS drugs_fts USING fts5(name, description, content='drugs', content_rowid='id', tokenize='unicode61 remove_diacritics 2');",
+                    "CREATE TRIGGER IF NOT EXISTS drugs_fts_insert AFTER INSERT ON drugs BEGIN " +
+                            "INSERT INTO drugs_fts(rowid, name, description) VALUES (new.id, new.name, new.description); END;",
+                    "CREATE TRIGGER IF NOT EXISTS drugs_fts_delete AFTER DELETE ON drugs BEGIN " +
+                            "INSERT INTO drugs_fts(drugs_fts, rowid, name, description) VALUES ('delete', old.id, old.name, old.description); END;",
+                    "CREATE TRIGGER IF NOT EXISTS drugs_fts_update AFTER UPDATE OF name, description ON drugs BEGIN " +
+                            "INSERT INTO drugs_fts(drugs_fts, rowid, name, description) VALUES ('delete', old.id, old.name, old.description); " +
+                            "INSERT INTO drugs_fts(rowid, name, description) VALUES (new.id, new.name, new.description); END;",
+                    "INSERT INTO drugs_fts(drugs_fts) VALUES ('rebuild');"),
+            new Migration(4, "Add a change log of drugs and orders for delta sync.",
+                    "CREATE TABLE IF NOT EXISTS change_log(version INTEGER PRIMARY KEY AUTOINCREMENT, entity TEXT NOT NULL, entity_id INTEGER NOT NULL, deleted BOOLEAN NOT NULL, UNIQUE(entity, entity_id));",
+                    changeLogTrigger("drugs_change_insert", "INSERT", "drugs", "drug", "new", false),
+                    changeLogTrigger("drugs_change_update", "UPDATE", "drugs", "drug", "new", false),
+                    changeLogTrigger("drugs_change_delete", "DELETE", "drugs", "drug", "old", true),
+                    changeLogTrigger("orders_change_insert", "INSERT", "orders", "order", "new", false),
+                    changeLogTrigger("orders_change_update", "UPDATE", "orders", "order", "new", false),
+                    changeLogTrigger("orders_change_delete", "DELETE", "orders", "order", "old", true),
+                    "INSERT INTO change_log(entity, entity_id, deleted) SELECT 'drug', id, 0 FROM drugs ORDER BY id;",
+                    "INSERT INTO change_log(entity, entity_id, deleted) SELECT 'order', id, 0 FROM orders ORDER BY id;"),
+            // The delta queries select a version range of one entity in version order, which this index reads directly.
+            new Migration(5, "Index the change log by entity and version.",
+                    "CREATE INDEX IF NOT EXISTS change_log_entity_version_index ON change_log(entity, version);")
+    );
+
+    private static final List<String> ARCHIVE_SCHEMA = List.of(
+            "CREATE TABLE IF NOT EXISTS archive.orders(id INTEGER PRIMARY KEY, ordered_by INTEGER, delivered BOOLEAN, ordered_at DATETIME, delivered_At DATETIME, version INTEGER NOT NULL DEFAULT 0);",
+            "CREATE TABLE IF NOT EXISTS archive.order_details(order_id INTEGER, drug_id INTEGER, quantity INTEGER);",
+            "CREATE INDEX IF NOT EXISTS archive.order_details_order_id_index ON order_details(order_id, drug_id, quantity);"
+    );
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    /**
+     * Builds a trigger that moves the row of a changed entity to the end of the {@code change_log},
+     * so the log keeps one row per entity, whose version is the one of its last change.
+     */
+    private static String changeLogTrigger(String name, String event, String table, String entity, String row, boolean deleted) {
+        return "CREATE TRIGGER IF NOT EXISTS " + name + " AFTER " + event + " ON " + table + " BEGIN " +
+                "DELETE FROM change_log WHERE entity = '" + entity + "' AND entity_id = " + row + ".id; " +
+                "INSERT INTO change_log(entity, entity_id, deleted) VALUES ('" + entity + "', " + row + ".id, " + (deleted ? 1 : 0) + "); END;";
+    }
+
+    /**
+     * Creates the tables of the archive database attached as {@code archive}, if they do not exist yet.
+     * Archived rows keep the columns they had in the main database.
+     * @param con the connection the archive database is attached to.
+     * @throws SQLException if the tables could not be created.
+     */
+    public void createArchiveSchema(Connection con) throws SQLException {
+        _logger.traceEntry("Creating archive schema.");
+
+        try (var statement = con.createStatement()) {
+            for (var sql : ARCHIVE_SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+
+        _logger.traceExit();
+    }
+
+    /**
+     * Applies every migration newer than the current schema version, each in its own transaction.
+     * @param con the connection to migrate with.
+     * @return the number of applied migrations.
+     * @throws SQLException if a migration failed, in which case the schema is left at the last successful version.
+     */
+    public int migrate(Connection con) throws SQLException {
+        _logger.traceEntry("Migrating database schema.");
+
+        try (var statement = con.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version(version INTEGER PRIMARY KEY, description TEXT NOT NULL, applied_at INTEGER NOT NULL);");
+        }
+
+        var current = getCurrentVersion(con);
+        var applied = 0;
+        var autoCommit = con.getAutoCommit();
+        try {
+            con.setAutoCommit(false);
+            for (var migration : MIGRATIONS) {
+                if (migration.getVersion() <= current) {
+                    continue;
+                }
+
+                _logger.info("Applying migration {}: {}", migration.getVersion(), migration.getDescription());
+                try (var statement = con.createStatement()) {
+                    for (var sql : migration.getStatements()) {
+                        statement.execute(sql);
+                    }
+                }
+                try (var statement = con.prepareStatement("INSERT INTO schema_version(version, description, applied_at) VALUES (?,?,?);")) {
+                    statement.setInt(1, migration.getVersion());
+                    statement.setString(2, migration.getDescription());
+                    statement.setLong(3, System.currentTimeMillis());
+                    statement.executeUpdate();
+                }
+                con.commit();
+                applied++;
+            }
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            con.rollback();
+            throw _logger.traceExit(ex);
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+
+        _logger.traceExit("Applied {} migrations.", applied);
+        return applied;
+    }
+
+    /**
+     * @param con the connection to read the version with.
+     * @return the version of the last applied migration, or 0 if none was applied.
+     * @throws SQLException if the version could not be read.
+     */
+    public int getCurrentVersion(Connection con) throws SQLException {
+        try (var statement = con.prepareStatement("SELECT COALESCE(MAX(version), 0) FROM schema_version;")) {
+            try (var result = statement.executeQuery()) {
+                result.next();
+
+                return result.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * @return the version the schema has after all known migrations are applied.
+     */
+    public int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).getVersion();
+    }
+}
@@ -0,0 +1,174 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least recently used cache of the {@link PreparedStatement}s of one physical connection, keyed by their SQL text.
+ * Cached statements are handed out as proxies whose {@code close()} clears their parameters and keeps them for reuse,
+ * so callers use them exactly like freshly prepared statements.
+ */
+class StatementCache {
+    private final Connection physical;
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    /**
+     * @param physical the connection the statements are prepared on.
+     * @param capacity the maximum number of cached statements.
+     * @param hits counter incremented when a cached statement is reused.
+     * @param misses counter incremented when a statement has to be prepared.
+     */
+    StatementCache(Connection physical, int capacity, AtomicLong hits, AtomicLong misses) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for the given SQL text, preparing it if it is not cached or already in use.
+     * @param sql the SQL text of the statement.
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}.
+     * @return a {@link PreparedStatement} that goes back to the cache when closed.
+     * @throws SQLException if the statement could not be prepared.
+     */
+    synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        var key = autoGeneratedKeys + ":" + sql;
+        var cached = statements.get(key);
+
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+
+            var statement = physical.prepareStatement(sql, autoGeneratedKeys);
+            if (cached != null) {
+                _logger.info("Statement already in use, preparing an uncached copy: {}", sql);
+
+                return statement;
+            }
+
+            cached = new CachedStatement(statement);
+            statements.put(key, cached);
+        }
+
+        cached.inUse = true;
+        return cached.newHandle();
+    }
+
+    /**
+     * Closes every cached statement that is not in use.
+     */
+    synchronized void clear() {
+        for (var cached : statements.values()) {
+            cached.evict();
+        }
+        statements.clear();
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    private synchronized void release(CachedStatement cached) {
+        cached.inUse = false;
+
+        try {
+            if (cached.evicted) {
+                cached.physical.close();
+            } else {
+                cached.physical.clearParameters();
+                cached.physical.clearBatch();
+            }
+        } catch (SQLException ex) {
+            _logger.error(ex);
+
+            statements.values().remove(cached);
+            cached.evicted = true;
+        }
+    }
+
+    private class CachedStatement {
+        private final PreparedStatement physical;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * Marks the statement as no longer cached, closing it now or when its current user is done with it.
+         */
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    physical.close();
+                } catch (SQLException ex) {
+                    _logger.error(ex);
+                }
+            }
+        }
+
+        private PreparedStatement newHandle() {
+            var closed = new boolean[] { false };
+
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                if (!closed[0]) {
+                                    closed[0] = true;
+                                    release(this);
+                                }
+                                return null;
+                            case "isClosed":
+                                return closed[0];
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                if (closed[0]) {
+                                    throw new SQLException("Statement is closed.");
+                                }
+                        }
+
+                        try {
+                            return method.invoke(physical, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    });
+        }
+    }
+}
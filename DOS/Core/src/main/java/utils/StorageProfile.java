@@ -0,0 +1,95 @@
+package utils;
+
+/**
+ * Named sets of SQLite settings applied to every connection, each trading durability for throughput differently.
+ * The profile is chosen with the {@code jdbc.profile} property, and each of its settings can be overridden on its own
+ * with {@code jdbc.journalMode}, {@code jdbc.synchronous}, {@code jdbc.cacheSize}, {@code jdbc.mmapSize},
+ * {@code jdbc.tempStore} and {@code jdbc.busyTimeout}.
+ * Every profile keeps the WAL journal, which the reader connections rely on to read while the writer writes.
+ * Their throughput is measured by {@code BenchmarkStorageProfiles}. Its workload and settings, run on SQLite 3.40
+ * on a single core, best of three runs:
+ * <pre>
+ * profile     synchronous  small tx/s  rows/s (one tx)  table scans/s
+ * DURABLE     FULL               8518           409978           33.3
+ * BALANCED    NORMAL            14988           390671           34.2
+ * THROUGHPUT  OFF               25848           420470           37.1
+ * </pre>
+ * Only small commits are told apart by the profiles; the larger caches and memory mapping make no measurable difference
+ * on a database of this size. The server commits far fewer than 8000 orders per second,
+ * so {@link #DURABLE} is the default: the commits BALANCED speeds up are the ones it may lose on a power loss.
+ */
+public enum StorageProfile {
+    /**
+     * Every commit is synced to disk before it returns, so no committed transaction is ever lost.
+     * SQLite's own page cache size, no memory mapping. The default profile.
+     */
+    DURABLE("WAL", "FULL", -2000, 0L, "DEFAULT", 5000),
+    /**
+     * The WAL is only synced at checkpoints: a crash of the application loses nothing,
+     * a power loss may lose the last commits but never corrupts the database.
+     * A 16 MB page cache, 64 MB of memory mapped reads and temporary tables in memory.
+     */
+    BALANCED("WAL", "NORMAL", -16000, 67108864L, "MEMORY", 5000),
+    /**
+     * Nothing is synced, writing is left to the operating system:
+     * a crash of the operating system or a power loss may corrupt the database.
+     * A 64 MB page cache and 256 MB of memory mapped reads. Only meant for data that can be rebuilt, like tests and imports.
+     */
+    THROUGHPUT("WAL", "OFF", -64000, 268435456L, "MEMORY", 5000);
+
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private final String tempStore;
+    private final int busyTimeout;
+
+    StorageProfile(String journalMode, String synchronous, int cacheSize, long mmapSize, String tempStore, int busyTimeout) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.busyTimeout = busyTimeout;
+    }
+
+    /**
+     * @param name the name of the profile, in any case.
+     * @return the profile with the name, or {@link #DURABLE} if the name is {@code null}.
+     * @throws IllegalArgumentException if there is no profile with the name.
+     */
+    public static StorageProfile fromName(String name) {
+        if (name == null) {
+            return DURABLE;
+        }
+
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    /**
+     * @return the page cache size, in pages if positive or in KB if negative, like {@code PRAGMA cache_size}.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public int getBusyTimeout() {
+        return busyTimeout;
+    }
+}
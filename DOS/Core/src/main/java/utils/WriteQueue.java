@@ -0,0 +1,187 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serializes the writes to one database on a single writer thread and commits them in groups.
+ * The writer takes every write waiting in the queue, up to the maximum batch size, and runs them in one transaction,
+ * each inside its own savepoint, so a failing write is rolled back without affecting the others in its batch.
+ * Repository calls made by a write take part in the transaction of its batch,
+ * as long as the repositories and the queue are given the same database URL.
+ */
+public class WriteQueue implements AutoCloseable {
+    private final JdbcUtils dbUtils;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingWrite<?>> queue;
+    private final Thread writer;
+    private final AtomicLong committedBatches;
+    private final AtomicLong committedWrites;
+    private volatile boolean closed;
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    public WriteQueue(String jdbcUrl, int maxBatchSize) {
+        this(new JdbcUtils(JdbcUtils.propertiesFor(jdbcUrl)), maxBatchSize);
+    }
+
+    public WriteQueue(JdbcUtils dbUtils, int maxBatchSize) {
+        _logger.info("Initializing Write Queue.");
+
+        this.dbUtils = dbUtils;
+        this.maxBatchSize = maxBatchSize;
+        queue = new LinkedBlockingQueue<>();
+        committedBatches = new AtomicLong();
+        committedWrites = new AtomicLong();
+
+        writer = new Thread(this::run, "dos-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a write for the writer thread.
+     * @param work the write; its connection is the one of the batch transaction.
+     * @param <T> the type of the result of the write.
+     * @return a {@link CompletableFuture} completed with the result of the write once its batch is committed,
+     *         or completed exceptionally if the write or the commit of its batch failed.
+     */
+    public <T> CompletableFuture<T> submit(JdbcUtils.TransactionWork<T> work) {
+        var pending = new PendingWrite<>(work);
+        if (closed) {
+            pending.future.completeExceptionally(new IllegalStateException("Write queue is closed."));
+        } else {
+            queue.add(pending);
+        }
+
+        return pending.future;
+    }
+
+    /**
+     * Stops accepting writes and waits for the queued ones to be committed.
+     */
+    @Override
+    public void close() {
+        _logger.info("Closing Write Queue.");
+
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            _logger.error(ex);
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getCommittedBatches() {
+        return committedBatches.get();
+    }
+
+    public long getCommittedWrites() {
+        return committedWrites.get();
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    private void run() {
+        var batch = new ArrayList<PendingWrite<?>>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+            } catch (InterruptedException ex) {
+                _logger.warn("Writer interrupted.");
+                break;
+            }
+
+            commit(batch);
+            batch.clear();
+        }
+
+        // Writes queued while closing, or left after an interruption, are never committed.
+        queue.drainTo(batch);
+        for (var pending : batch) {
+            pending.future.completeExceptionally(new IllegalStateException("Write queue is closed."));
+        }
+    }
+
+    /**
+     * Runs a batch of writes in one transaction and completes their futures after the commit.
+     */
+    private void commit(List<PendingWrite<?>> batch) {
+        _logger.traceEntry("Committing {} writes.", batch.size());
+
+        try {
+            dbUtils.inTransaction(con -> {
+                for (var pending : batch) {
+                    pending.apply();
+                }
+                return null;
+            });
+        } catch (SQLException | RuntimeException ex) {
+            _logger.error(ex);
+
+            for (var pending : batch) {
+                pending.future.completeExceptionally(ex);
+            }
+            _logger.traceExit();
+            return;
+        }
+
+        committedBatches.incrementAndGet();
+        committedWrites.addAndGet(batch.size());
+        for (var pending : batch) {
+            pending.complete();
+        }
+
+        _logger.traceExit();
+    }
+
+    private class PendingWrite<T> {
+        private final JdbcUtils.TransactionWork<T> work;
+        private final CompletableFuture<T> future;
+        private T result;
+        private Exception failure;
+
+        private PendingWrite(JdbcUtils.TransactionWork<T> work) {
+            this.work = work;
+            this.future = new CompletableFuture<>();
+        }
+
+        /**
+         * Runs the write inside a savepoint of the batch transaction, keeping its result or failure for the commit.
+         */
+        private void apply() {
+            try {
+                result = dbUtils.inTransaction(work);
+            } catch (SQLException | RuntimeException ex) {
+                failure = ex;
+            }
+        }
+
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
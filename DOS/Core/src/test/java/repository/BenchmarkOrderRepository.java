@@ -0,0 +1,133 @@
+package repository;
+
+import domain.models.Order;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import utils.JdbcUtils;
+import utils.TestConstants;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares loading all orders with one query per order (N+1) against the single joined scan used by {@link OrderRepository}.
+ * Run with {@code gradle :Core:benchmark}.
+ */
+@Tag("benchmark")
+public class BenchmarkOrderRepository {
+    private static final int ORDERS = 5000;
+    private static final int DETAILS_PER_ORDER = 5;
+    private static final int RUNS = 5;
+
+    private static IOrderRepository _orderRepo;
+    private static JdbcUtils _dbUtils;
+
+    @BeforeAll
+    public static void SetupDB() throws SQLException {
+        var props = new Properties();
+        try {
+            props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        } catch (IOException e) {
+            System.out.println("Cannot find " + TestConstants.TEST_CONFIG_FILE + ".\n");
+            e.printStackTrace();
+            return;
+        }
+
+        _orderRepo = new OrderRepository(props.getProperty("jdbc.url"));
+        _dbUtils = new JdbcUtils(props);
+        _orderRepo.clear();
+
+        try (var con = _dbUtils.getConnection()) {
+            con.setAutoCommit(false);
+            try (var orders = con.prepareStatement("INSERT INTO orders(ordered_by, delivered, ordered_at, delivered_At) VALUES (?,?,?,?);");
+                 var details = con.prepareStatement("INSERT INTO order_details(order_id, drug_id, quantity) VALUES (?,?,?);")) {
+                var now = new Date(System.currentTimeMillis());
+                for (var i = 1; i <= ORDERS; i++) {
+                    orders.setInt(1, i % 20);
+                    orders.setBoolean(2, i % 2 == 0);
+                    orders.setDate(3, now);
+                    orders.setDate(4, now);
+                    orders.addBatch();
+                    for (var d = 1; d <= DETAILS_PER_ORDER; d++) {
+                        details.setInt(1, i);
+                        details.setInt(2, d);
+                        details.setInt(3, d * 2);
+                        details.addBatch();
+                    }
+                }
+                orders.executeBatch();
+                details.executeBatch();
+            }
+            con.commit();
+        }
+    }
+
+    @AfterAll
+    public static void ClearDB() {
+        _orderRepo.clear();
+    }
+
+    @Test
+    public void GetAll_NPlusOneVersusJoin() throws SQLException {
+        var legacy = loadWithOneQueryPerOrder();
+        var joined = _orderRepo.getAll();
+        assertEquals(ORDERS, joined.size());
+        assertEquals(legacy, joined);
+
+        var legacyTime = 0L;
+        for (var i = 0; i < RUNS; i++) {
+            var start = System.nanoTime();
+            loadWithOneQueryPerOrder();
+            legacyTime += System.nanoTime() - start;
+        }
+
+        var statementsBefore = _dbUtils.getReadOnlyPool().getPreparedStatementCount();
+        var joinedTime = 0L;
+        for (var i = 0; i < RUNS; i++) {
+            var start = System.nanoTime();
+            _orderRepo.getAll();
+            joinedTime += System.nanoTime() - start;
+        }
+        var joinedQueries = (_dbUtils.getReadOnlyPool().getPreparedStatementCount() - statementsBefore) / RUNS;
+
+        System.out.printf("getAll over %d orders x %d details:%n", ORDERS, DETAILS_PER_ORDER);
+        System.out.printf("  N+1 queries: %d queries, %.1f ms%n", ORDERS + 1, legacyTime / RUNS / 1e6);
+        System.out.printf("  joined scan: %d queries, %.1f ms%n", joinedQueries, joinedTime / RUNS / 1e6);
+
+        assertEquals(1, joinedQueries);
+    }
+
+    /**
+     * The pre-join implementation of {@link OrderRepository#getAll()}: one query for the orders and one per order for its details.
+     */
+    private List<Order> loadWithOneQueryPerOrder() throws SQLException {
+        var orders = new ArrayList<Order>();
+        try (var con = _dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement("SELECT * FROM orders ORDER BY id;")) {
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    var order = new Order(result.getInt(1), result.getInt(2), result.getBoolean(3), result.getDate(4), result.getDate(5));
+                    try (var detailsStatement = con.prepareStatement("SELECT * FROM order_details WHERE order_id=?;")) {
+                        detailsStatement.setInt(1, order.getId());
+                        try (var details = detailsStatement.executeQuery()) {
+                            while (details.next()) {
+                                order.addDrug(details.getInt(2), details.getInt(3));
+                            }
+                        }
+                    }
+                    orders.add(order);
+                }
+            }
+        }
+
+        return orders;
+    }
+}
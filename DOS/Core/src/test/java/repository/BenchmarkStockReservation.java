@@ -0,0 +1,102 @@
+package repository;
+
+import domain.models.Drug;
+import domain.models.Order;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import utils.TestConstants;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Places orders for the same drug from many threads until it runs out, and checks that exactly its stock was sold.
+ * Run with {@code gradle :Core:benchmark}.
+ */
+@Tag("benchmark")
+public class BenchmarkStockReservation {
+    private static final int THREADS = 16;
+    private static final int STOCK = 5000;
+    private static final int MAX_QUANTITY = 3;
+
+    private static IOrderRepository _orderRepo;
+    private static IDrugRepository _drugRepo;
+
+    @BeforeAll
+    public static void SetupDB() {
+        var props = new Properties();
+        try {
+            props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        } catch (IOException e) {
+            System.out.println("Cannot find " + TestConstants.TEST_CONFIG_FILE + ".\n");
+            e.printStackTrace();
+            return;
+        }
+
+        _orderRepo = new OrderRepository(props.getProperty("jdbc.url"));
+        _drugRepo = new DrugRepository(props.getProperty("jdbc.url"));
+        _orderRepo.clear();
+        _drugRepo.clear();
+    }
+
+    @AfterAll
+    public static void ClearDB() {
+        _orderRepo.clear();
+        _drugRepo.clear();
+    }
+
+    @Test
+    public void ParallelOrdersForHotDrug_NoOversell() throws InterruptedException {
+        var hotDrug = new Drug.Builder().withName("hot-drug").withInStock(STOCK).build();
+        _drugRepo.add(hotDrug);
+
+        var sold = new AtomicInteger();
+        var placed = new AtomicInteger();
+        var rejected = new AtomicInteger();
+        var pool = Executors.newFixedThreadPool(THREADS);
+        var start = System.nanoTime();
+        for (var t = 0; t < THREADS; t++) {
+            var thread = t;
+            pool.submit(() -> {
+                var quantity = thread % MAX_QUANTITY + 1;
+                while (true) {
+                    var order = new Order.Builder().withOrderedBy(thread).withDrugs(Map.of(hotDrug.getId(), quantity)).build();
+                    try {
+                        if (_orderRepo.placeOrder(order).isEmpty()) {
+                            sold.addAndGet(quantity);
+                            placed.incrementAndGet();
+                        }
+                    } catch (InsufficientStockException ex) {
+                        rejected.incrementAndGet();
+                        if (ex.getShortages().get(hotDrug.getId()) >= quantity) {
+                            return;
+                        }
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES));
+        var elapsed = (System.nanoTime() - start) / 1e9;
+
+        var remaining = _drugRepo.getById(hotDrug.getId()).orElseThrow().getInStock();
+        var orderedInDatabase = _orderRepo.getAll().stream().mapToInt(o -> o.getDrugs().get(hotDrug.getId())).sum();
+
+        System.out.printf("%d threads placed %d orders (%.0f orders/s), rejected %d, sold %d of %d, %d left%n",
+                THREADS, placed.get(), placed.get() / elapsed, rejected.get(), sold.get(), STOCK, remaining);
+
+        assertTrue(remaining >= 0);
+        assertTrue(remaining < MAX_QUANTITY);
+        assertEquals(STOCK - remaining, sold.get());
+        assertEquals(sold.get(), orderedInDatabase);
+    }
+}
@@ -1,17 +1,25 @@
 package repository;
 
+import domain.dto.DrugFilter;
 import domain.models.Drug;
 import domain.validation.ValidationException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import utils.Constants;
 import utils.TestConstants;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -120,6 +128,66 @@ public class TestDrugRepository {
         assertEquals(5, actualAvailableDrugs.size());
     }
 
+    @Test
+    public void DrugRepoWithMultipleDrugs_GetPageAvailableOnly_ReturnsOnlyAvailableDrugsAfterId() {
+        var drugs = addDrugsToRepo(5);
+        _drugRepo.add(new Drug.Builder().withName("unavailable").withInStock(0).build());
+
+        var firstPage = _drugRepo.getPage(null, 3, new DrugFilter.Builder().withAvailableOnly(true).build());
+        var secondPage = _drugRepo.getPage(firstPage.get(2).getId(), 3, new DrugFilter.Builder().withAvailableOnly(true).build());
+
+        assertEquals(drugs.subList(0, 3), firstPage);
+        assertEquals(drugs.subList(3, 5), secondPage);
+    }
+
+    @Test
+    public void DrugRepoWithMultipleDrugs_ForEach_VisitsEveryDrugInOrder() {
+        var drugs = addDrugsToRepo(30);
+
+        var visited = new ArrayList<Drug>();
+        _drugRepo.forEach(visited::add);
+
+        assertEquals(drugs, visited);
+    }
+
+    @Test
+    public void DrugRepoWithStoredDrug_ImportCsv_AddsNewDrugsUpdatesExistingAndRejectsInvalidRows() throws IOException {
+        _drugRepo.add(new Drug.Builder().withName("aspirin").withInStock(1).build());
+        var csv = "name,description,in_stock\n" +
+                "aspirin,\"pain, fever\",40\n" +
+                "ibuprofen,anti-inflammatory,25\n" +
+                "broken,missing column\n" +
+                "negative,stock,-3\n" +
+                "paracetamol,\"the \"\"mild\"\" one\",0\n";
+
+        var report = _drugRepo.importCsv(new StringReader(csv), 2);
+        var stored = _drugRepo.getAll();
+
+        assertEquals(5, report.getRowsRead());
+        assertEquals(3, report.getRowsImported());
+        assertEquals(2, report.getRowsRejected());
+        assertEquals(2, report.getErrors().size());
+        assertEquals(3, stored.size());
+        assertTrue(stored.contains(new Drug.Builder().withName("aspirin").withDescription("pain, fever").withInStock(40).build()));
+        assertTrue(stored.contains(new Drug.Builder().withName("paracetamol").withDescription("the \"mild\" one").withInStock(0).build()));
+    }
+
+    @Test
+    public void DrugRepoWithMultipleDrugs_ExportCsvThenImportCsv_CatalogIsUnchanged() throws IOException {
+        var drugs = addDrugsToRepo(10);
+        drugs.add(new Drug.Builder().withName("quoted").withDescription("a, \"b\"").build());
+        _drugRepo.add(drugs.get(10));
+
+        var csv = new StringWriter();
+        var exported = _drugRepo.exportCsv(csv);
+        _drugRepo.clear();
+        var report = _drugRepo.importCsv(new StringReader(csv.toString()), 4);
+
+        assertEquals(11, exported);
+        assertEquals(11, report.getRowsImported());
+        assertEquals(drugs, _drugRepo.getAll());
+    }
+
     @Test
     public void DrugRepoWithDrug_Remove_DrugIsDeleted() {
         var drug = addDrugToRepo();
@@ -163,6 +231,104 @@ public class TestDrugRepository {
         assertEquals("Null Drug received.", exception.getMessage());
     }
 
+    @Test
+    public void ParallelAdds_EveryDrugGetsItsOwnId() throws InterruptedException {
+        var threads = 8;
+        var drugsPerThread = 25;
+        var added = new ConcurrentLinkedQueue<Drug>();
+        var pool = Executors.newFixedThreadPool(threads);
+        for (var t = 0; t < threads; t++) {
+            var thread = t;
+            pool.submit(() -> {
+                for (var i = 0; i < drugsPerThread; i++) {
+                    var drug = new Drug.Builder().withName("drug-" + thread + "-" + i).build();
+                    _drugRepo.add(drug);
+                    added.add(drug);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+        var ids = added.stream().map(Drug::getId).collect(Collectors.toSet());
+
+        assertEquals(threads * drugsPerThread, ids.size());
+        for (var drug : added) {
+            var inDatabase = _drugRepo.getById(drug.getId());
+            assertTrue(inDatabase.isPresent());
+            assertEquals(drug, inDatabase.get());
+        }
+    }
+
+    @Test
+    public void DrugRepoWithMoreDrugsThanOneQueryTakes_GetByIds_ReturnsOnlyStoredDrugs() {
+        var drugs = addDrugsToRepo(Constants.MAX_IDS_PER_QUERY + 5);
+        var ids = drugs.stream().map(Drug::getId).collect(Collectors.toList());
+        ids.add(drugs.get(0).getId());
+        ids.add(drugs.get(drugs.size() - 1).getId() + 1);
+
+        var found = _drugRepo.getByIds(ids);
+
+        assertEquals(drugs.size(), found.size());
+        for (var drug : drugs) {
+            assertEquals(drug, found.get(drug.getId()));
+        }
+    }
+
+    @Test
+    public void DrugRepoWithDescribedDrugs_SearchDrugsByPrefix_NameMatchesRankFirst() {
+        var inDescription = new Drug.Builder().withName("Aspirin").withDescription("Paracetamol alternative").build();
+        var inName = new Drug.Builder().withName("Paracetamol").withDescription("Pain relief").build();
+        var unrelated = new Drug.Builder().withName("Ibuprofen").withDescription("Anti-inflammatory").build();
+        _drugRepo.add(inDescription);
+        _drugRepo.add(inName);
+        _drugRepo.add(unrelated);
+
+        var found = _drugRepo.searchDrugs("parac", 10, null);
+
+        assertEquals(List.of(inName, inDescription), found);
+    }
+
+    @Test
+    public void DrugRepoWithUpdatedAndRemovedDrugs_SearchDrugs_IndexFollowsChanges() {
+        var renamed = addDrugToRepo();
+        var removed = new Drug.Builder().withName("Removed drug").build();
+        var outOfStock = new Drug.Builder().withName("Empty drug").withInStock(0).build();
+        _drugRepo.add(removed);
+        _drugRepo.add(outOfStock);
+        _drugRepo.modify(new Drug.Builder().from(renamed).withName("Renamed drug").build());
+        _drugRepo.delete(removed.getId());
+
+        var byNewName = _drugRepo.searchDrugs("renamed", 10, null);
+        var byRemovedName = _drugRepo.searchDrugs("removed", 10, null);
+        var available = _drugRepo.searchDrugs("\"drug\"*", 10, new DrugFilter.Builder().withAvailableOnly(true).build());
+
+        assertEquals(1, byNewName.size());
+        assertEquals(renamed.getId(), byNewName.get(0).getId());
+        assertTrue(byRemovedName.isEmpty());
+        assertEquals(1, available.size());
+        assertEquals(renamed.getId(), available.get(0).getId());
+    }
+
+    @Test
+    public void DrugRepoWithChangesAfterVersion_GetChangedAndDeletedSince_ReturnsOnlyLaterChanges() {
+        var drugs = addDrugsToRepo(3);
+        var version = _drugRepo.getChangeLogVersion();
+        var updated = new Drug.Builder().from(drugs.get(0)).withInStock(5).build();
+        _drugRepo.modify(updated);
+        _drugRepo.delete(drugs.get(1).getId());
+        var added = addDrugToRepo();
+        var upToVersion = _drugRepo.getChangeLogVersion();
+
+        var changed = _drugRepo.getChangedSince(version, upToVersion);
+        var deleted = _drugRepo.getDeletedSince(version, upToVersion);
+
+        assertEquals(version + 3, upToVersion);
+        assertEquals(List.of(updated, added), changed);
+        assertEquals(List.of(drugs.get(1).getId()), deleted);
+        assertTrue(_drugRepo.getChangedSince(upToVersion, upToVersion).isEmpty());
+    }
+
     private Drug addDrugToRepo() {
         var drug = new Drug.Builder().build();
         _drugRepo.add(drug);
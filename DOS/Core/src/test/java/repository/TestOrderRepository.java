@@ -1,22 +1,34 @@
 package repository;
 
+import domain.dto.OrderFilter;
 import domain.models.Drug;
 import domain.models.Order;
+import domain.models.User;
 import domain.validation.ValidationException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import utils.TestConstants;
 
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class TestOrderRepository {
+    private static final int STOCKED_DRUGS = 40;
+    private static final int STOCK = 1000;
+
     private static IOrderRepository _orderRepo;
+    private static IDrugRepository _drugRepo;
+    private static IUserRepository _userRepo;
 
     @BeforeAll
     public static void SetupDB() {
@@ -30,12 +42,25 @@ public class TestOrderRepository {
         }
 
         _orderRepo = new OrderRepository(props.getProperty("jdbc.url"));
+        _drugRepo = new DrugRepository(props.getProperty("jdbc.url"));
+        _userRepo = new UserRepository(props.getProperty("jdbc.url"));
         _orderRepo.clear();
+        _drugRepo.clear();
+        _userRepo.clear();
+    }
+
+    @BeforeEach
+    public void StockDrugs() {
+        for (var i = 1; i <= STOCKED_DRUGS; i++) {
+            _drugRepo.add(new Drug.Builder().withName("drug-" + i).withInStock(STOCK).build());
+        }
     }
 
     @AfterEach
     public void ClearDB() {
         _orderRepo.clear();
+        _drugRepo.clear();
+        _userRepo.clear();
     }
 
     @Test
@@ -164,6 +189,245 @@ public class TestOrderRepository {
         assertEquals(order, actualOrder.get());
     }
 
+    @Test
+    public void OrderRepoWithMultipleOrders_GetByIds_ReturnsOnlyStoredOrders() {
+        var orders = addOrdersToRepo(4);
+        var drugs = new HashMap<Integer, Integer>();
+        drugs.put(1, 2);
+        drugs.put(3, 4);
+        var placed = new Order.Builder().withDrugs(drugs).build();
+        _orderRepo.placeOrder(placed);
+        var ids = List.of(orders.get(0).getId(), placed.getId(), placed.getId() + 1);
+
+        var found = _orderRepo.getByIds(ids);
+
+        assertEquals(2, found.size());
+        assertEquals(orders.get(0), found.get(orders.get(0).getId()));
+        assertEquals(placed, found.get(placed.getId()));
+    }
+
+    @Test
+    public void OrderRepo_PlaceOrderWithManyLines_AllDetailsAreStored() {
+        var drugs = new HashMap<Integer, Integer>();
+        for (var i = 1; i <= 40; i++) {
+            drugs.put(i, i * 2);
+        }
+        var order = new Order.Builder().withDrugs(drugs).build();
+
+        var result = _orderRepo.placeOrder(order);
+        var actualOrder = _orderRepo.getById(order.getId());
+
+        assertTrue(result.isEmpty());
+        assertTrue(actualOrder.isPresent());
+        assertEquals(40, actualOrder.get().getDrugs().size());
+        assertEquals(order, actualOrder.get());
+    }
+
+    @Test
+    public void ParallelPlaceOrders_EveryOrderGetsItsOwnId() throws InterruptedException {
+        var threads = 8;
+        var ordersPerThread = 25;
+        var placed = new ConcurrentLinkedQueue<Order>();
+        var pool = Executors.newFixedThreadPool(threads);
+        for (var t = 0; t < threads; t++) {
+            var thread = t;
+            pool.submit(() -> {
+                for (var i = 0; i < ordersPerThread; i++) {
+                    var order = new Order.Builder().withOrderedBy(thread).withDrugs(Map.of(thread + 1, i + 1)).build();
+                    _orderRepo.placeOrder(order);
+                    placed.add(order);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+        var ids = placed.stream().map(Order::getId).collect(Collectors.toSet());
+        var inDatabase = _orderRepo.getByIds(ids);
+
+        assertEquals(threads * ordersPerThread, ids.size());
+        for (var order : placed) {
+            assertEquals(order, inDatabase.get(order.getId()));
+        }
+    }
+
+    @Test
+    public void OrderRepo_PlaceOrder_StockIsReserved() {
+        var order = new Order.Builder().withDrugs(Map.of(1, 10, 2, 1)).build();
+
+        _orderRepo.placeOrder(order);
+
+        assertEquals(STOCK - 10, _drugRepo.getById(1).orElseThrow().getInStock());
+        assertEquals(STOCK - 1, _drugRepo.getById(2).orElseThrow().getInStock());
+    }
+
+    @Test
+    public void OrderWithShortDrugs_PlaceOrder_InsufficientStockExceptionThrownAndNothingIsStored() {
+        var order = new Order.Builder().withDrugs(Map.of(1, 10, 2, STOCK + 5, STOCKED_DRUGS + 1, 3)).build();
+
+        var exception = assertThrows(InsufficientStockException.class, () -> _orderRepo.placeOrder(order));
+
+        assertEquals(Map.of(2, 5, STOCKED_DRUGS + 1, 3), exception.getShortages());
+        assertEquals(STOCK, _drugRepo.getById(1).orElseThrow().getInStock());
+        assertTrue(_orderRepo.getAll().isEmpty());
+    }
+
+    @Test
+    public void OrderWithNegativeQuantity_PlaceOrder_ValidationExceptionThrownAndStockIsUnchanged() {
+        var order = new Order.Builder().withDrugs(Map.of(1, 10, 2, -50)).build();
+
+        var exception = assertThrows(ValidationException.class, () -> _orderRepo.placeOrder(order));
+
+        assertEquals("Order quantity of drug 2 must be positive.", exception.getMessage());
+        assertEquals(STOCK, _drugRepo.getById(1).orElseThrow().getInStock());
+        assertEquals(STOCK, _drugRepo.getById(2).orElseThrow().getInStock());
+        assertTrue(_orderRepo.getAll().isEmpty());
+    }
+
+    @Test
+    public void PendingOrder_CancelOrder_OrderIsRemovedAndStockIsRestored() {
+        var order = new Order.Builder().withDelivered(false).withDrugs(Map.of(1, 10, 2, 20)).build();
+        _orderRepo.placeOrder(order);
+
+        var cancelled = _orderRepo.cancelOrder(order.getId());
+
+        assertTrue(cancelled.isPresent());
+        assertEquals(order, cancelled.get());
+        assertTrue(_orderRepo.getById(order.getId()).isEmpty());
+        assertEquals(STOCK, _drugRepo.getById(1).orElseThrow().getInStock());
+        assertEquals(STOCK, _drugRepo.getById(2).orElseThrow().getInStock());
+    }
+
+    @Test
+    public void DeliveredOrder_CancelOrder_OrderIsKept() {
+        var order = new Order.Builder().withDelivered(true).withDrugs(Map.of(1, 10)).build();
+        _orderRepo.placeOrder(order);
+
+        var cancelled = _orderRepo.cancelOrder(order.getId());
+
+        assertTrue(cancelled.isEmpty());
+        assertTrue(_orderRepo.getById(order.getId()).isPresent());
+        assertEquals(STOCK - 10, _drugRepo.getById(1).orElseThrow().getInStock());
+    }
+
+    @Test
+    public void PendingOrder_CompleteOrder_OrderIsDeliveredOnce() {
+        var order = new Order.Builder().withDelivered(false).withDrugs(Map.of(1, 1)).build();
+        _orderRepo.placeOrder(order);
+
+        var completed = _orderRepo.completeOrder(order.getId());
+        var completedAgain = _orderRepo.completeOrder(order.getId());
+
+        assertTrue(completed);
+        assertFalse(completedAgain);
+        assertTrue(_orderRepo.getById(order.getId()).orElseThrow().getDelivered());
+    }
+
+    @Test
+    public void OrderRepoWithOrderDetails_Delete_OrderIsDeletedOnce() {
+        var order = new Order.Builder().withDrugs(Map.of(1, 1, 2, 2)).build();
+        _orderRepo.placeOrder(order);
+
+        var deleted = _orderRepo.delete(order.getId());
+        var deletedAgain = _orderRepo.delete(order.getId());
+
+        assertTrue(deleted);
+        assertFalse(deletedAgain);
+        assertTrue(_orderRepo.getById(order.getId()).isEmpty());
+    }
+
+    @Test
+    public void OrderRepoWithMultipleOrders_GetPage_PagesCoverAllOrdersOnce() {
+        var orders = addOrdersToRepo(25);
+
+        var paged = new ArrayList<Order>();
+        Integer afterId = null;
+        List<Order> page;
+        do {
+            page = _orderRepo.getPage(afterId, 10, null);
+            paged.addAll(page);
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).getId();
+        } while (page.size() == 10);
+
+        assertEquals(orders, paged);
+    }
+
+    @Test
+    public void OrderRepoWithMultipleOrders_GetPageWithFilter_ReturnsOnlyMatchingOrders() {
+        addOrdersToRepo(5);
+        var pending = new ArrayList<Order>();
+        for (var i = 0; i < 3; i++) {
+            var order = new Order.Builder().withDelivered(false).withOrderedBy(7).build();
+            _orderRepo.add(order);
+            pending.add(order);
+        }
+
+        var page = _orderRepo.getPage(null, 10, new OrderFilter.Builder().withDelivered(false).withOrderedBy(7).build());
+
+        assertEquals(pending, page);
+    }
+
+    @Test
+    public void OrderRepoWithOrderDetails_Stream_ReturnsSameOrdersAsGetAll() {
+        for (var i = 1; i <= 3; i++) {
+            _orderRepo.placeOrder(new Order.Builder().withDrugs(Map.of(i, i, i + 10, 2 * i)).build());
+        }
+        addOrdersToRepo(2);
+
+        List<Order> streamed;
+        try (var orders = _orderRepo.stream(2)) {
+            streamed = orders.collect(Collectors.toList());
+        }
+
+        assertEquals(5, streamed.size());
+        assertEquals(_orderRepo.getAll(), streamed);
+    }
+
+    @Test
+    public void OrdersOfStoredAndMissingUsers_GetOrderSummaries_NamesAreJoined() {
+        var user = new User.Builder().withFirstName("Ana").withLastName("Pop").build();
+        _userRepo.add(user);
+        var ofUser = new Order.Builder().withOrderedBy(user.getId()).withDelivered(false).build();
+        var ofMissingUser = new Order.Builder().withOrderedBy(user.getId() + 1).build();
+        _orderRepo.add(ofUser);
+        _orderRepo.add(ofMissingUser);
+
+        var summaries = _orderRepo.getOrderSummaries(null);
+        var pending = _orderRepo.getOrderSummaries(null, 10, new OrderFilter.Builder().withDelivered(false).build());
+
+        assertEquals(2, summaries.size());
+        assertEquals(ofUser.getId(), summaries.get(0).getId());
+        assertEquals("Ana Pop", summaries.get(0).getOrderedBy());
+        assertFalse(summaries.get(0).getDelivered());
+        assertEquals(ofMissingUser.getId(), summaries.get(1).getId());
+        assertEquals(Integer.toString(user.getId() + 1), summaries.get(1).getOrderedBy());
+        assertEquals(1, pending.size());
+        assertEquals(ofUser.getId(), pending.get(0).getId());
+    }
+
+    @Test
+    public void OldDeliveredOrder_ArchiveOrders_OnlyReadWhenArchiveIsRequested() {
+        var now = System.currentTimeMillis();
+        var old = new Order.Builder().withDeliveredAt(new java.sql.Date(now - 3 * 86400000L)).withDrugs(Map.of(1, 2)).build();
+        var recent = new Order.Builder().withDeliveredAt(new java.sql.Date(now)).build();
+        var pending = new Order.Builder().withDelivered(false).withDeliveredAt(new java.sql.Date(now - 3 * 86400000L)).build();
+        _orderRepo.placeOrder(old);
+        _orderRepo.add(recent);
+        _orderRepo.add(pending);
+
+        var archived = _orderRepo.archiveOrders(new java.sql.Date(now - 86400000L), 10);
+        var hot = _orderRepo.getAll();
+        var withArchive = _orderRepo.getPage(null, 10, new OrderFilter.Builder().withIncludeArchived(true).build());
+        var summaries = _orderRepo.getOrderSummaries(new OrderFilter.Builder().withIncludeArchived(true).build());
+
+        assertEquals(1, archived);
+        assertEquals(List.of(recent, pending), hot);
+        assertTrue(_orderRepo.getById(old.getId()).isEmpty());
+        assertEquals(List.of(old, recent, pending), withArchive);
+        assertEquals(3, summaries.size());
+        assertEquals(0, _orderRepo.archiveOrders(new java.sql.Date(now - 86400000L), 10));
+    }
+
     private Order addOrderToRepo() {
         var order = new Order.Builder().build();
         _orderRepo.add(order);
@@ -0,0 +1,218 @@
+package repository;
+
+import domain.dto.OrderFilter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import utils.JdbcUtils;
+import utils.TestConstants;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the query plans of the repositories' hot queries, so a query or index change that makes one of them scan a whole table fails.
+ */
+public class TestQueryPlans {
+    private static JdbcUtils _dbUtils;
+
+    @BeforeAll
+    public static void SetupDB() {
+        var props = new Properties();
+        try {
+            props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        } catch (IOException e) {
+            System.out.println("Cannot find " + TestConstants.TEST_CONFIG_FILE + ".\n");
+            e.printStackTrace();
+            return;
+        }
+
+        _dbUtils = new JdbcUtils(props);
+    }
+
+    @Test
+    public void UserQueries_UseIndexes() throws SQLException {
+        assertUsesIndexes(UserRepository.SELECT_USER_BY_ID);
+        assertUsesIndexes(UserRepository.SELECT_USER_BY_USERNAME);
+        assertUsesIndexes(UserRepository.selectUsersByIds(3));
+        assertUsesIndexes(UserRepository.UPDATE_USER);
+        assertUsesIndexes(UserRepository.DELETE_USER);
+    }
+
+    @Test
+    public void DrugQueries_UseIndexes() throws SQLException {
+        assertUsesIndexes(DrugRepository.SELECT_DRUG_BY_ID);
+        assertUsesIndexes(DrugRepository.selectDrugsByIds(3));
+        assertUsesIndexes(DrugRepository.SELECT_AVAILABLE_DRUGS);
+        assertUsesIndexes(DrugRepository.selectDrugPage(true));
+        assertUsesIndexes(DrugRepository.selectDrugPage(false));
+        assertUsesIndexes(DrugRepository.selectDrugSearch(true));
+        assertUsesIndexes(DrugRepository.selectDrugSearch(false));
+        assertUsesIndexes(DrugRepository.SELECT_CHANGE_LOG_VERSION);
+        assertUsesIndexes(DrugRepository.SELECT_CHANGED_DRUGS);
+        assertUsesIndexes(DrugRepository.SELECT_DELETED_DRUG_IDS);
+        assertUsesIndexes(DrugRepository.UPDATE_DRUG);
+        assertUsesIndexes(DrugRepository.DELETE_DRUG);
+    }
+
+    @Test
+    public void OrderQueries_UseIndexes() throws SQLException {
+        assertUsesIndexes(OrderRepository.SELECT_ORDER_BY_ID);
+        assertUsesIndexes(OrderRepository.selectOrdersByIds(3));
+        assertUsesIndexes(OrderRepository.selectStock(3));
+        assertUsesIndexes(OrderRepository.RESERVE_STOCK);
+        assertUsesIndexes(OrderRepository.RESTOCK);
+        assertUsesIndexes(OrderRepository.COMPLETE_ORDER);
+        assertUsesIndexes(OrderRepository.UPDATE_ORDER);
+        assertUsesIndexes(OrderRepository.DELETE_ORDER_DETAILS);
+        assertUsesIndexes(OrderRepository.DELETE_ORDER);
+        assertUsesIndexes(OrderRepository.SELECT_CHANGE_LOG_VERSION);
+        assertUsesIndexes(OrderRepository.SELECT_CHANGED_ORDERS);
+        assertUsesIndexes(OrderRepository.SELECT_DELETED_ORDER_IDS);
+        assertUsesIndexes(OrderRepository.SELECT_ARCHIVABLE_ORDER_IDS);
+        assertUsesIndexes(OrderRepository.SELECT_ARCHIVED_ORDER_IDS);
+    }
+
+    @Test
+    public void ChangeLogQueries_ReadVersionRangeInOrder() throws SQLException {
+        // Every client polls these, so they must read only the requested versions instead of sorting the whole log of an entity.
+        assertNotSorted(DrugRepository.SELECT_CHANGED_DRUGS);
+        assertSearches(DrugRepository.SELECT_CHANGED_DRUGS, "c", "change_log_entity_version_index");
+        assertNotSorted(DrugRepository.SELECT_DELETED_DRUG_IDS);
+        assertSearches(DrugRepository.SELECT_DELETED_DRUG_IDS, "change_log", "change_log_entity_version_index");
+        assertNotSorted(OrderRepository.SELECT_CHANGED_ORDERS);
+        assertSearches(OrderRepository.SELECT_CHANGED_ORDERS, "c", "change_log_entity_version_index");
+        assertNotSorted(OrderRepository.SELECT_DELETED_ORDER_IDS);
+        assertSearches(OrderRepository.SELECT_DELETED_ORDER_IDS, "change_log", "change_log_entity_version_index");
+    }
+
+    @Test
+    public void DrugsTable_NameHasUniqueIndex() throws SQLException {
+        // EXPLAIN QUERY PLAN shows no plan for the upsert, whose conflict lookup needs a unique index on the name.
+        var uniqueColumns = new ArrayList<String>();
+        try (var con = _dbUtils.getReadOnlyConnection(); var statement = con.createStatement()) {
+            var uniqueIndexes = new ArrayList<String>();
+            try (var result = statement.executeQuery("PRAGMA index_list('drugs');")) {
+                while (result.next()) {
+                    if (result.getBoolean("unique") && result.getInt("partial") == 0) {
+                        uniqueIndexes.add(result.getString("name"));
+                    }
+                }
+            }
+            for (var index : uniqueIndexes) {
+                var columns = new ArrayList<String>();
+                try (var result = statement.executeQuery("PRAGMA index_info('" + index + "');")) {
+                    while (result.next()) {
+                        columns.add(result.getString("name"));
+                    }
+                }
+                uniqueColumns.add(String.join(",", columns));
+            }
+        }
+
+        assertTrue(uniqueColumns.contains("name"), "No unique index on drugs.name, only on: " + uniqueColumns);
+    }
+
+    @Test
+    public void AllOrders_ReadInOrderWithDetailsFoundByIndex() throws SQLException {
+        // Every order is read, so scanning the orders is expected; sorting them or scanning the details is not.
+        assertNotSorted(OrderRepository.SELECT_ALL_ORDERS);
+        assertSearches(OrderRepository.SELECT_ALL_ORDERS, "d", "order_details_order_id_index");
+    }
+
+    @Test
+    public void FilteredOrderQueries_UseIndexes() throws SQLException {
+        var fullFilter = new OrderFilter.Builder()
+                .withDelivered(true)
+                .withOrderedBy(1)
+                .withOrderedFrom(new Date(0))
+                .withOrderedTo(new Date(System.currentTimeMillis()))
+                .build();
+        var archiveFilter = new OrderFilter.Builder()
+                .withDelivered(true)
+                .withOrderedBy(1)
+                .withIncludeArchived(true)
+                .build();
+
+        for (var filter : new OrderFilter[]{null, fullFilter, archiveFilter}) {
+            assertUsesIndexes(OrderRepository.selectOrderPage(null, 10, filter, new ArrayList<>()));
+            assertUsesIndexes(OrderRepository.selectOrderSummaries(null, 10, filter, new ArrayList<>()));
+            assertUsesIndexes(OrderRepository.selectOrderSummaries(null, null, filter, new ArrayList<>()));
+        }
+    }
+
+    /**
+     * Fails if any step of the query plan scans a table without using an index.
+     */
+    private void assertUsesIndexes(String sql) throws SQLException {
+        var plan = explain(sql);
+        var subqueries = new HashSet<String>();
+        for (var step : plan) {
+            assertFalse(isFullScan(step, subqueries), "Full table scan (" + step + ") in: " + sql);
+        }
+    }
+
+    /**
+     * Fails if the query sorts its rows in a temporary B-tree instead of reading them in order from an index.
+     */
+    private void assertNotSorted(String sql) throws SQLException {
+        for (var step : explain(sql)) {
+            assertFalse(step.startsWith("USE TEMP B-TREE"), "Sort (" + step + ") in: " + sql);
+        }
+    }
+
+    /**
+     * Fails if the query does not look up the rows of the table with the given alias through the given index.
+     */
+    private void assertSearches(String sql, String alias, String index) throws SQLException {
+        var plan = explain(sql);
+        assertTrue(plan.stream().anyMatch(step -> step.startsWith("SEARCH " + alias + " ") && step.contains("INDEX " + index + " (")),
+                "No search of " + alias + " using " + index + " in: " + sql + "\n" + plan);
+    }
+
+    /**
+     * The parameters are left unbound, which does not change the plan.
+     * @return the steps of the query plan, failing if there are none.
+     */
+    private List<String> explain(String sql) throws SQLException {
+        var plan = new ArrayList<String>();
+        try (var con = _dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            var paramCount = statement.getParameterMetaData().getParameterCount();
+            for (var i = 1; i <= paramCount; i++) {
+                statement.setObject(i, null);
+            }
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    plan.add(result.getString("detail"));
+                }
+            }
+        }
+
+        assertFalse(plan.isEmpty(), "No query plan for: " + sql);
+        return plan;
+    }
+
+    /**
+     * @param subqueries the names of the subqueries declared by the previous steps, which this step adds its own to.
+     *                   Scanning a subquery reads the rows it produced, not a table.
+     */
+    private boolean isFullScan(String step, HashSet<String> subqueries) {
+        var words = List.of(step.split(" "));
+        if (words.size() > 1 && (words.get(0).equals("CO-ROUTINE") || words.get(0).equals("MATERIALIZE"))) {
+            subqueries.add(words.get(1));
+            return false;
+        }
+
+        return words.get(0).equals("SCAN")
+                && !step.contains(" USING ")
+                && !step.contains("VIRTUAL TABLE INDEX")
+                && !(words.size() > 1 && subqueries.contains(words.get(1)));
+    }
+}
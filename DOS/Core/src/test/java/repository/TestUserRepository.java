@@ -132,6 +132,60 @@ public class TestUserRepository {
         assertEquals(updatedUser, inDatabase.get());
     }
 
+    @Test
+    public void UserRepo_ModifyUser_UserIsUpdated() {
+        var user = addUserToRepo();
+        var updatedUser = new User.Builder().from(user).withUserName("my-name").build();
+
+        var modified = _userRepo.modify(updatedUser);
+        var inDatabase = _userRepo.getById(updatedUser.getId());
+
+        assertTrue(modified);
+        assertTrue(inDatabase.isPresent());
+        assertEquals(updatedUser, inDatabase.get());
+    }
+
+    @Test
+    public void UserRepoWithNoStoredId_ModifyAndDelete_ReturnFalse() {
+        var user = addUserToRepo();
+        var missing = new User.Builder().from(user).withId(user.getId() + 1).withUserName("my-name").build();
+
+        assertFalse(_userRepo.modify(missing));
+        assertFalse(_userRepo.delete(missing.getId()));
+        assertTrue(_userRepo.delete(user.getId()));
+        assertTrue(_userRepo.getById(user.getId()).isEmpty());
+    }
+
+    @Test
+    public void UserRepo_ModifyUser_VersionIsIncremented() {
+        var user = addUserToRepo();
+        var updatedUser = new User.Builder().from(user).withUserName("my-name").build();
+
+        _userRepo.modify(updatedUser);
+        var inDatabase = _userRepo.getById(updatedUser.getId());
+
+        assertEquals(1, updatedUser.getVersion());
+        assertTrue(inDatabase.isPresent());
+        assertEquals(1, inDatabase.get().getVersion());
+    }
+
+    @Test
+    public void UserRepoWithStaleUser_UpdateAndModify_VersionConflictExceptionThrown() {
+        var user = addUserToRepo();
+        var first = new User.Builder().from(user).withUserName("first-name").build();
+        var stale = new User.Builder().from(user).withUserName("stale-name").build();
+        _userRepo.update(first);
+
+        var exception = assertThrows(VersionConflictException.class, () -> _userRepo.update(stale));
+        assertThrows(VersionConflictException.class, () -> _userRepo.modify(stale));
+        var inDatabase = _userRepo.getById(user.getId());
+
+        assertEquals(0, exception.getExpectedVersion());
+        assertEquals(1, exception.getStoredVersion());
+        assertTrue(inDatabase.isPresent());
+        assertEquals("first-name", inDatabase.get().getUserName());
+    }
+
     @Test
     public void UserRepo_UpdateWithInvalidUser_ValidationExceptionIsThrown() {
         addUsersToRepo(2);
@@ -177,6 +231,18 @@ public class TestUserRepository {
         assertTrue(found.isEmpty());
     }
 
+    @Test
+    public void UserRepoWithMultipleUsers_GetByIds_ReturnsOnlyStoredUsers() {
+        var users = addUsersToRepo(3);
+        var ids = List.of(users.get(0).getId(), users.get(2).getId(), users.get(2).getId() + 1);
+
+        var found = _userRepo.getByIds(ids);
+
+        assertEquals(2, found.size());
+        assertEquals(users.get(0), found.get(users.get(0).getId()));
+        assertEquals(users.get(2), found.get(users.get(2).getId()));
+    }
+
     private User addUserToRepo() {
         var user = new User.Builder().build();
         _userRepo.add(user);
@@ -0,0 +1,183 @@
+package utils;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures read and write throughput while one thread keeps placing orders and several threads keep reading them,
+ * for rollback journal and WAL databases and a growing number of reader connections.
+ * Run with {@code gradle :Core:benchmark}.
+ */
+@Tag("benchmark")
+public class BenchmarkMixedWorkload {
+    private static final int ORDERS = 2000;
+    private static final int DETAILS_PER_ORDER = 5;
+    private static final long RUN_MILLIS = 3000L;
+    private static final int[] READERS = { 1, 2, 4, 8 };
+
+    private static Path _directory;
+    private static Path _seed;
+
+    @BeforeAll
+    public static void SetupDB() throws IOException, SQLException {
+        var props = new Properties();
+        props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        var dbUtils = new JdbcUtils(props);
+
+        _directory = Files.createTempDirectory("dos-benchmark");
+        _seed = _directory.resolve("seed.sqlite");
+        try (var con = dbUtils.getConnection(); var statement = con.createStatement()) {
+            statement.execute("VACUUM INTO '" + _seed + "';");
+        }
+
+        var seedUtils = new JdbcUtils(propertiesFor(_seed, "DELETE", 1));
+        seedUtils.inTransaction(con -> {
+            try (var clear = con.createStatement()) {
+                clear.execute("DELETE FROM order_details;");
+                clear.execute("DELETE FROM orders;");
+            }
+            try (var orders = con.prepareStatement("INSERT INTO orders(id, ordered_by, delivered, ordered_at, delivered_At) VALUES (?,?,?,?,?);");
+                 var details = con.prepareStatement("INSERT INTO order_details(order_id, drug_id, quantity) VALUES (?,?,?);")) {
+                var now = new Date(System.currentTimeMillis());
+                for (var i = 1; i <= ORDERS; i++) {
+                    orders.setInt(1, i);
+                    orders.setInt(2, i % 20);
+                    orders.setBoolean(3, i % 2 == 0);
+                    orders.setDate(4, now);
+                    orders.setDate(5, now);
+                    orders.addBatch();
+                    for (var d = 1; d <= DETAILS_PER_ORDER; d++) {
+                        details.setInt(1, i);
+                        details.setInt(2, d);
+                        details.setInt(3, d * 2);
+                        details.addBatch();
+                    }
+                }
+                orders.executeBatch();
+                details.executeBatch();
+            }
+            return null;
+        });
+        seedUtils.close();
+    }
+
+    @AfterAll
+    public static void ClearDB() {
+        var files = _directory.toFile().listFiles();
+        if (files != null) {
+            for (var file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(_directory.toFile().delete());
+    }
+
+    @Test
+    public void ConcurrentReadsAndWrites_RollbackJournalVersusWal() throws Exception {
+        System.out.println("journal  readers  reads/s  writes/s");
+        for (var journalMode : new String[] { "DELETE", "WAL" }) {
+            for (var readers : READERS) {
+                var database = _directory.resolve(journalMode + "-" + readers + ".sqlite");
+                Files.copy(_seed, database);
+
+                var dbUtils = new JdbcUtils(propertiesFor(database, journalMode, readers));
+                try {
+                    var throughput = run(dbUtils, readers);
+
+                    System.out.printf("%-8s %7d %8.0f %9.0f%n", journalMode, readers, throughput[0], throughput[1]);
+                    assertTrue(throughput[0] > 0);
+                } finally {
+                    dbUtils.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one writer and {@code readers} reader threads for {@link #RUN_MILLIS}.
+     * @return the reads and the writes per second.
+     */
+    private double[] run(JdbcUtils dbUtils, int readers) throws Exception {
+        var stop = new AtomicBoolean();
+        var executor = Executors.newFixedThreadPool(readers + 1);
+        var tasks = new ArrayList<Callable<Long>>();
+        tasks.add(() -> {
+            var writes = 0L;
+            while (!stop.get()) {
+                dbUtils.inTransaction(con -> {
+                    try (var order = con.prepareStatement("INSERT INTO orders(ordered_by, delivered, ordered_at, delivered_At) VALUES (1,0,0,0);");
+                         var detail = con.prepareStatement("INSERT INTO order_details(order_id, drug_id, quantity) VALUES (last_insert_rowid(),1,1);")) {
+                        order.executeUpdate();
+                        detail.executeUpdate();
+                    }
+                    return null;
+                });
+                writes++;
+            }
+            return writes;
+        });
+        for (var i = 0; i < readers; i++) {
+            tasks.add(() -> {
+                var reads = 0L;
+                while (!stop.get()) {
+                    try (var con = dbUtils.getReadOnlyConnection();
+                         var statement = con.prepareStatement("SELECT o.id, d.drug_id, d.quantity FROM orders o LEFT JOIN order_details d ON d.order_id = o.id WHERE o.ordered_by = ? ORDER BY o.id;")) {
+                        statement.setInt(1, (int) (reads % 20));
+                        try (var result = statement.executeQuery()) {
+                            while (result.next()) {
+                                result.getInt(1);
+                            }
+                        }
+                    }
+                    reads++;
+                }
+                return reads;
+            });
+        }
+
+        var futures = new ArrayList<Future<Long>>();
+        for (var task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        Thread.sleep(RUN_MILLIS);
+        stop.set(true);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        var writes = futures.get(0).get();
+        var reads = 0L;
+        for (var future : futures.subList(1, futures.size())) {
+            reads += future.get();
+        }
+
+        var seconds = RUN_MILLIS / 1000.0;
+        return new double[] { reads / seconds, writes / seconds };
+    }
+
+    private static Properties propertiesFor(Path database, String journalMode, int readers) {
+        var props = new Properties();
+        props.setProperty("jdbc.url", "jdbc:sqlite:" + database.toAbsolutePath());
+        props.setProperty("jdbc.journalMode", journalMode);
+        props.setProperty("jdbc.pool.readOnly.maxSize", Integer.toString(readers));
+
+        return props;
+    }
+}
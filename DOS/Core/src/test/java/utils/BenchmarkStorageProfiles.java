@@ -0,0 +1,149 @@
+package utils;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures every {@link StorageProfile} on its own database:
+ * small write transactions, where the syncs of each commit dominate, one large write transaction,
+ * and repeated reads of a table larger than SQLite's default page cache.
+ * The durable profile pays a sync per commit, the balanced one only at checkpoints and the throughput one never,
+ * which is what separates them on small transactions; the larger caches and memory mapping of the last two show on reads.
+ * Run with {@code gradle :Core:benchmark}.
+ */
+@Tag("benchmark")
+public class BenchmarkStorageProfiles {
+    private static final int SMALL_TRANSACTIONS = 2000;
+    private static final int LARGE_TRANSACTION_ROWS = 100000;
+    private static final int READS = 20;
+
+    private static Path _directory;
+    private static Path _seed;
+
+    @BeforeAll
+    public static void SetupDB() throws IOException, SQLException {
+        var props = new Properties();
+        props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        var dbUtils = new JdbcUtils(props);
+
+        _directory = Files.createTempDirectory("dos-profiles");
+        _seed = _directory.resolve("seed.sqlite");
+        try (var con = dbUtils.getConnection(); var statement = con.createStatement()) {
+            statement.execute("VACUUM INTO '" + _seed + "';");
+        }
+    }
+
+    @AfterAll
+    public static void ClearDB() {
+        var files = _directory.toFile().listFiles();
+        if (files != null) {
+            for (var file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(_directory.toFile().delete());
+    }
+
+    @Test
+    public void EveryProfile_WritesAndReads_ThroughputIsReported() throws IOException, SQLException {
+        System.out.println("profile     synchronous  small tx/s  rows/s (one tx)  table scans/s");
+        for (var profile : StorageProfile.values()) {
+            var database = _directory.resolve(profile + ".sqlite");
+            Files.copy(_seed, database);
+
+            var props = JdbcUtils.propertiesFor("jdbc:sqlite:" + database.toAbsolutePath());
+            props.setProperty("jdbc.profile", profile.name());
+            var dbUtils = new JdbcUtils(props);
+            try {
+                dbUtils.inTransaction(con -> {
+                    try (var clear = con.createStatement()) {
+                        clear.execute("DELETE FROM order_details;");
+                        clear.execute("DELETE FROM orders;");
+                    }
+                    return null;
+                });
+
+                var smallTransactions = smallTransactions(dbUtils);
+                var largeTransaction = largeTransaction(dbUtils);
+                var reads = reads(dbUtils);
+
+                System.out.printf("%-11s %-12s %10.0f %16.0f %14.1f%n",
+                        profile, profile.getSynchronous(), smallTransactions, largeTransaction, reads);
+                assertTrue(smallTransactions > 0);
+                assertTrue(reads > 0);
+            } finally {
+                dbUtils.close();
+            }
+        }
+    }
+
+    /**
+     * Commits {@link #SMALL_TRANSACTIONS} transactions of one order each.
+     * @return the transactions per second.
+     */
+    private double smallTransactions(JdbcUtils dbUtils) throws SQLException {
+        var start = System.nanoTime();
+        for (var i = 0; i < SMALL_TRANSACTIONS; i++) {
+            dbUtils.inTransaction(con -> {
+                try (var order = con.prepareStatement("INSERT INTO orders(ordered_by, delivered, ordered_at, delivered_At) VALUES (1,0,0,0);")) {
+                    order.executeUpdate();
+                }
+                return null;
+            });
+        }
+
+        return SMALL_TRANSACTIONS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Inserts {@link #LARGE_TRANSACTION_ROWS} order details in one transaction.
+     * @return the rows per second.
+     */
+    private double largeTransaction(JdbcUtils dbUtils) throws SQLException {
+        var start = System.nanoTime();
+        dbUtils.inTransaction(con -> {
+            try (var detail = con.prepareStatement("INSERT INTO order_details(order_id, drug_id, quantity) VALUES (?,?,?);")) {
+                for (var i = 0; i < LARGE_TRANSACTION_ROWS; i++) {
+                    detail.setInt(1, i % SMALL_TRANSACTIONS + 1);
+                    detail.setInt(2, i);
+                    detail.setInt(3, 1);
+                    detail.addBatch();
+                }
+                detail.executeBatch();
+            }
+            return null;
+        });
+
+        return LARGE_TRANSACTION_ROWS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Scans the order details {@link #READS} times on a reader connection.
+     * @return the scans per second.
+     */
+    private double reads(JdbcUtils dbUtils) throws SQLException {
+        var start = System.nanoTime();
+        try (var con = dbUtils.getReadOnlyConnection();
+             var statement = con.prepareStatement("SELECT SUM(quantity), COUNT(DISTINCT drug_id) FROM order_details;")) {
+            for (var i = 0; i < READS; i++) {
+                try (var result = statement.executeQuery()) {
+                    assertTrue(result.next());
+                    assertEquals(LARGE_TRANSACTION_ROWS, result.getInt(1));
+                }
+            }
+        }
+
+        return READS / ((System.nanoTime() - start) / 1e9);
+    }
+}
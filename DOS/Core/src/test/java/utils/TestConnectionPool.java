@@ -0,0 +1,165 @@
+package utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ConnectionPool class.
+ */
+public class TestConnectionPool {
+    private ConnectionPool _pool;
+
+    @AfterEach
+    public void ClosePool() {
+        if (_pool != null) {
+            _pool.close();
+        }
+    }
+
+    @Test
+    public void ReturnedConnection_Borrow_ReusesPhysicalConnection() throws SQLException {
+        _pool = buildPool(new ConnectionPool.Builder().withMinSize(0).withMaxSize(2));
+
+        Connection first;
+        try (var con = _pool.borrow()) {
+            first = con.unwrap(Connection.class);
+        }
+        Connection second;
+        try (var con = _pool.borrow()) {
+            second = con.unwrap(Connection.class);
+        }
+
+        assertSame(first, second);
+        assertEquals(1, _pool.getOpenCount());
+        assertEquals(0, _pool.getActiveCount());
+    }
+
+    @Test
+    public void FullPool_Borrow_TimesOut() throws SQLException {
+        _pool = buildPool(new ConnectionPool.Builder().withMinSize(0).withMaxSize(2).withBorrowTimeout(50L));
+
+        try (var ignored1 = _pool.borrow(); var ignored2 = _pool.borrow()) {
+            assertEquals(2, _pool.getActiveCount());
+            assertThrows(SQLTimeoutException.class, () -> _pool.borrow());
+        }
+
+        assertEquals(0, _pool.getActiveCount());
+        assertEquals(2, _pool.getIdleCount());
+    }
+
+    @Test
+    public void ReturnedConnection_Use_ThrowsSQLException() throws SQLException {
+        _pool = buildPool(new ConnectionPool.Builder().withMinSize(0).withMaxSize(1));
+
+        var con = _pool.borrow();
+        con.close();
+
+        assertTrue(con.isClosed());
+        assertThrows(SQLException.class, con::createStatement);
+    }
+
+    @Test
+    public void ConnectionWithOpenTransaction_Return_TransactionIsRolledBack() throws SQLException {
+        _pool = buildPool(new ConnectionPool.Builder().withMinSize(0).withMaxSize(1));
+
+        try (var con = _pool.borrow()) {
+            con.setAutoCommit(false);
+        }
+
+        try (var con = _pool.borrow()) {
+            assertTrue(con.getAutoCommit());
+        }
+    }
+
+    @Test
+    public void IdleConnectionsAboveMinSize_EvictIdleConnections_PoolShrinksToMinSize() throws SQLException, InterruptedException {
+        _pool = buildPool(new ConnectionPool.Builder().withMinSize(1).withMaxSize(3).withIdleTimeout(1L));
+
+        try (var ignored1 = _pool.borrow(); var ignored2 = _pool.borrow(); var ignored3 = _pool.borrow()) {
+            assertEquals(3, _pool.getOpenCount());
+        }
+        Thread.sleep(10);
+
+        var evicted = _pool.evictIdleConnections();
+
+        assertEquals(2, evicted);
+        assertEquals(1, _pool.getOpenCount());
+    }
+
+    @Test
+    public void ConnectionHeldPastThreshold_DetectLeaks_ReportsLeak() throws SQLException, InterruptedException {
+        _pool = buildPool(new ConnectionPool.Builder().withMinSize(0).withMaxSize(2).withLeakThreshold(1L));
+
+        try (var ignored = _pool.borrow()) {
+            Thread.sleep(10);
+
+            assertEquals(1, _pool.detectLeaks());
+        }
+
+        assertEquals(0, _pool.detectLeaks());
+    }
+
+    @Test
+    public void SameSqlTwice_PrepareStatement_SecondIsServedFromCache() throws SQLException {
+        _pool = buildPool(new ConnectionPool.Builder().withMinSize(0).withMaxSize(1).withStatementCacheSize(4));
+
+        for (var i = 0; i < 2; i++) {
+            try (var con = _pool.borrow(); var statement = con.prepareStatement("SELECT ?;")) {
+                statement.setInt(1, i);
+                try (var result = statement.executeQuery()) {
+                    result.next();
+                    assertEquals(i, result.getInt(1));
+                }
+            }
+        }
+
+        assertEquals(1, _pool.getStatementCacheMisses());
+        assertEquals(1, _pool.getStatementCacheHits());
+    }
+
+    @Test
+    public void FullCache_PrepareStatement_LeastRecentlyUsedIsEvicted() throws SQLException {
+        _pool = buildPool(new ConnectionPool.Builder().withMinSize(0).withMaxSize(1).withStatementCacheSize(2));
+
+        try (var con = _pool.borrow()) {
+            for (var sql : new String[] { "SELECT 1;", "SELECT 2;", "SELECT 1;", "SELECT 3;", "SELECT 1;", "SELECT 2;" }) {
+                try (var statement = con.prepareStatement(sql)) {
+                    statement.executeQuery().close();
+                }
+            }
+        }
+
+        assertEquals(2, _pool.getStatementCacheHits());
+        assertEquals(4, _pool.getStatementCacheMisses());
+    }
+
+    @Test
+    public void StatementInUse_PrepareSameSql_GetsSeparateStatement() throws SQLException {
+        _pool = buildPool(new ConnectionPool.Builder().withMinSize(0).withMaxSize(1).withStatementCacheSize(4));
+
+        try (var con = _pool.borrow();
+             var outer = con.prepareStatement("SELECT ?;");
+             var inner = con.prepareStatement("SELECT ?;")) {
+            outer.setInt(1, 1);
+            inner.setInt(1, 2);
+            try (var outerResult = outer.executeQuery(); var innerResult = inner.executeQuery()) {
+                outerResult.next();
+                innerResult.next();
+
+                assertEquals(1, outerResult.getInt(1));
+                assertEquals(2, innerResult.getInt(1));
+            }
+        }
+    }
+
+    private ConnectionPool buildPool(ConnectionPool.Builder builder) {
+        return builder.build(() -> DriverManager.getConnection("jdbc:sqlite::memory:"));
+    }
+}
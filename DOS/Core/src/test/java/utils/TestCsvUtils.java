@@ -0,0 +1,31 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for CsvUtils class.
+ */
+public class TestCsvUtils {
+    @Test
+    public void FieldsWithSeparatorsAndQuotes_FormatThenParse_ReturnsSameFields()
+    {
+        var line = CsvUtils.formatLine("plain", "with, comma", "with \"quotes\"", "", 12);
+
+        var fields = CsvUtils.parseLine(line);
+
+        assertEquals(List.of("plain", "with, comma", "with \"quotes\"", "", "12"), fields);
+    }
+
+    @Test
+    public void UnterminatedQuotedField_ParseLine_IllegalArgumentExceptionThrown()
+    {
+        var exception = assertThrows(IllegalArgumentException.class, () -> CsvUtils.parseLine("a,\"b,c"));
+
+        assertEquals("Unterminated quoted field.", exception.getMessage());
+    }
+}
@@ -0,0 +1,214 @@
+package utils;
+
+import domain.models.Drug;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import repository.DrugRepository;
+import repository.IDrugRepository;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for JdbcUtils class.
+ */
+public class TestJdbcUtils {
+    private static JdbcUtils _dbUtils;
+    private static IDrugRepository _drugRepo;
+    private static String _jdbcUrl;
+
+    @BeforeAll
+    public static void SetupDB() {
+        var props = new Properties();
+        try {
+            props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        } catch (IOException e) {
+            System.out.println("Cannot find " + TestConstants.TEST_CONFIG_FILE + ".\n");
+            e.printStackTrace();
+            return;
+        }
+
+        _drugRepo = new DrugRepository(props.getProperty("jdbc.url"));
+        _dbUtils = new JdbcUtils(props);
+        _jdbcUrl = props.getProperty("jdbc.url");
+        _drugRepo.clear();
+    }
+
+    @AfterEach
+    public void ClearDB() {
+        _drugRepo.clear();
+    }
+
+    @Test
+    public void RepositoryCallsInTransaction_WorkFails_EverythingIsRolledBack() {
+        var exception = assertThrows(SQLException.class, () -> _dbUtils.inTransaction(con -> {
+            _drugRepo.add(new Drug.Builder().withName("drug-1").build());
+            _drugRepo.add(new Drug.Builder().withName("drug-2").build());
+            throw new SQLException("Failed on purpose.");
+        }));
+
+        assertEquals("Failed on purpose.", exception.getMessage());
+        assertTrue(_drugRepo.getAll().isEmpty());
+    }
+
+    @Test
+    public void RepositoryCallsInTransaction_WorkCompletes_EverythingIsCommitted() throws SQLException {
+        _dbUtils.inTransaction(con -> {
+            _drugRepo.add(new Drug.Builder().withName("drug-1").build());
+            _drugRepo.add(new Drug.Builder().withName("drug-2").build());
+            return null;
+        });
+
+        assertEquals(2, _drugRepo.getAll().size());
+    }
+
+    @Test
+    public void NestedTransactionFails_OuterTransactionCompletes_OnlyNestedWorkIsRolledBack() throws SQLException {
+        _dbUtils.inTransaction(con -> {
+            _drugRepo.add(new Drug.Builder().withName("drug-1").build());
+            assertThrows(SQLException.class, () -> _dbUtils.inTransaction(nested -> {
+                _drugRepo.add(new Drug.Builder().withName("drug-2").build());
+                throw new SQLException("Failed on purpose.");
+            }));
+            return null;
+        });
+
+        var drugs = _drugRepo.getAll();
+        assertEquals(1, drugs.size());
+        assertEquals("drug-1", drugs.get(0).getName());
+    }
+
+    @Test
+    public void ReaderConnection_JournalMode_IsWal() throws SQLException {
+        try (var con = _dbUtils.getReadOnlyConnection(); var statement = con.prepareStatement("PRAGMA journal_mode;")) {
+            try (var result = statement.executeQuery()) {
+                result.next();
+
+                assertEquals("wal", result.getString(1).toLowerCase());
+            }
+        }
+    }
+
+    @Test
+    public void WriteTransactionInProgress_ReadOnOtherThread_ReadsLastCommittedStateWithoutWaiting() throws Exception {
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            _dbUtils.inTransaction(con -> {
+                _drugRepo.add(new Drug.Builder().withName("drug-1").build());
+
+                var seen = executor.submit(() -> _drugRepo.getAll().size());
+                try {
+                    assertEquals(0, seen.get(5, TimeUnit.SECONDS));
+                } catch (InterruptedException | ExecutionException | TimeoutException ex) {
+                    fail(ex);
+                }
+                return null;
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, _drugRepo.getAll().size());
+    }
+
+    @Test
+    public void DefaultProperties_NewConnection_DurableProfileIsApplied() throws SQLException {
+        try (var con = _dbUtils.getConnection(); var statement = con.createStatement()) {
+            assertEquals(StorageProfile.DURABLE, _dbUtils.getProfile());
+            assertEquals(2, queryLong(statement, "PRAGMA synchronous;"));
+            assertEquals(0, queryLong(statement, "PRAGMA temp_store;"));
+        }
+    }
+
+    @Test
+    public void OpenDatabase_NewJdbcUtilsWithAnotherProfile_IllegalArgumentExceptionThrown() {
+        var props = JdbcUtils.propertiesFor(_jdbcUrl);
+        props.setProperty("jdbc.profile", "throughput");
+
+        assertThrows(IllegalArgumentException.class, () -> new JdbcUtils(props));
+    }
+
+    @Test
+    public void ThroughputProfileWithOverride_NewConnection_ProfileAndOverrideAreApplied() throws Exception {
+        var directory = Files.createTempDirectory("dos-profile");
+        var database = directory.resolve("profile.sqlite");
+        try (var con = _dbUtils.getConnection(); var statement = con.createStatement()) {
+            statement.execute("VACUUM INTO '" + database + "';");
+        }
+        var props = JdbcUtils.propertiesFor("jdbc:sqlite:" + database);
+        props.setProperty("jdbc.profile", "throughput");
+        props.setProperty("jdbc.cacheSize", "-1000");
+        var dbUtils = new JdbcUtils(props);
+
+        try (var con = dbUtils.getReadOnlyConnection(); var statement = con.createStatement()) {
+            assertEquals(0, queryLong(statement, "PRAGMA synchronous;"));
+            assertEquals(-1000, queryLong(statement, "PRAGMA cache_size;"));
+            assertEquals(StorageProfile.THROUGHPUT.getMmapSize(), queryLong(statement, "PRAGMA mmap_size;"));
+        } finally {
+            dbUtils.close();
+            var files = directory.toFile().listFiles();
+            if (files != null) {
+                for (var file : files) {
+                    assertTrue(file.delete());
+                }
+            }
+            assertTrue(directory.toFile().delete());
+        }
+    }
+
+    @Test
+    public void ClosedJdbcUtils_Borrow_FailsAndNewJdbcUtilsOpensNewPools() throws Exception {
+        var directory = Files.createTempDirectory("dos-close");
+        var database = directory.resolve("close.sqlite");
+        try (var con = _dbUtils.getConnection(); var statement = con.createStatement()) {
+            statement.execute("VACUUM INTO '" + database + "';");
+        }
+        var props = JdbcUtils.propertiesFor("jdbc:sqlite:" + database);
+        props.setProperty("jdbc.pool.readOnly.maxSize", "2");
+        var closed = new JdbcUtils(props);
+        closed.close();
+        var reopened = new JdbcUtils(props);
+
+        try {
+            assertThrows(SQLException.class, closed::getReadOnlyConnection);
+            assertNotSame(closed.getReadOnlyPool(), reopened.getReadOnlyPool());
+            assertEquals(2, reopened.getReadOnlyPool().getMaxSize());
+            try (var con = reopened.getReadOnlyConnection(); var statement = con.createStatement()) {
+                assertEquals(1, queryLong(statement, "SELECT 1;"));
+            }
+        } finally {
+            reopened.close();
+            var files = directory.toFile().listFiles();
+            if (files != null) {
+                for (var file : files) {
+                    assertTrue(file.delete());
+                }
+            }
+            assertTrue(directory.toFile().delete());
+        }
+    }
+
+    @Test
+    public void UnknownProfile_FromName_IllegalArgumentExceptionThrown() {
+        assertThrows(IllegalArgumentException.class, () -> StorageProfile.fromName("fastest"));
+    }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (var result = statement.executeQuery(sql)) {
+            result.next();
+
+            return result.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package utils;
+
+import domain.dto.OrderFilter;
+import domain.models.Order;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import repository.IOrderRepository;
+import repository.OrderRepository;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for OrderArchiver class.
+ */
+public class TestOrderArchiver {
+    private static IOrderRepository _orderRepo;
+    private static JdbcUtils _dbUtils;
+
+    @BeforeAll
+    public static void SetupDB() {
+        var props = new Properties();
+        try {
+            props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        } catch (IOException e) {
+            System.out.println("Cannot find " + TestConstants.TEST_CONFIG_FILE + ".\n");
+            e.printStackTrace();
+            return;
+        }
+
+        _orderRepo = new OrderRepository(props.getProperty("jdbc.url"));
+        _dbUtils = new JdbcUtils(props);
+        _orderRepo.clear();
+    }
+
+    @AfterEach
+    public void ClearDB() {
+        _orderRepo.clear();
+    }
+
+    @Test
+    public void MoreOldOrdersThanOneChunk_Archive_AllOldOrdersAreMoved() {
+        var longAgo = new Date(System.currentTimeMillis() - 10 * 86400000L);
+        for (var i = 0; i < 5; i++) {
+            _orderRepo.add(new Order.Builder().withDeliveredAt(longAgo).build());
+        }
+        var recent = new Order.Builder().build();
+        _orderRepo.add(recent);
+
+        try (var archiver = new OrderArchiver(_orderRepo, 86400000L, 2, 0)) {
+            var archived = archiver.archive();
+
+            assertEquals(5, archived);
+            assertEquals(5, archiver.getArchivedOrders());
+        }
+        var hot = _orderRepo.getAll();
+
+        assertEquals(1, hot.size());
+        assertTrue(hot.contains(recent));
+    }
+
+    @Test
+    public void OrderLeftInBothDatabases_Archive_OrderIsMovedOnce() throws SQLException {
+        var longAgo = new Date(System.currentTimeMillis() - 10 * 86400000L);
+        var order = new Order.Builder().withDeliveredAt(longAgo).withDrugs(Map.of(1, 2, 3, 4)).build();
+        _orderRepo.add(order);
+
+        try (var archiver = new OrderArchiver(_orderRepo, 86400000L, 10, 0)) {
+            archiver.archive();
+            // A run interrupted after the archive committed but before main did leaves the order in both databases.
+            _dbUtils.inTransaction(con -> {
+                try (var statement = con.createStatement()) {
+                    statement.execute("INSERT INTO main.orders SELECT * FROM archive.orders;");
+                    statement.execute("INSERT INTO main.order_details SELECT * FROM archive.order_details;");
+                }
+                return null;
+            });
+
+            var archived = archiver.archive();
+
+            assertEquals(1, archived);
+        }
+        var withArchive = _orderRepo.getPage(null, 10, new OrderFilter.Builder().withIncludeArchived(true).build());
+
+        assertTrue(_orderRepo.getAll().isEmpty());
+        assertEquals(List.of(order), withArchive);
+    }
+}
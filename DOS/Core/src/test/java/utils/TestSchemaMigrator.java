@@ -0,0 +1,50 @@
+package utils;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SchemaMigrator class.
+ */
+public class TestSchemaMigrator {
+    private static JdbcUtils _dbUtils;
+
+    @BeforeAll
+    public static void SetupDB() {
+        var props = new Properties();
+        try {
+            props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        } catch (IOException e) {
+            System.out.println("Cannot find " + TestConstants.TEST_CONFIG_FILE + ".\n");
+            e.printStackTrace();
+            return;
+        }
+
+        _dbUtils = new JdbcUtils(props);
+    }
+
+    @Test
+    public void InitializedJdbcUtils_SchemaIsAtLatestVersion() throws SQLException {
+        var migrator = new SchemaMigrator();
+
+        try (var con = _dbUtils.getConnection()) {
+            assertEquals(migrator.getLatestVersion(), migrator.getCurrentVersion(con));
+        }
+    }
+
+    @Test
+    public void MigratedSchema_Migrate_AppliesNothing() throws SQLException {
+        var migrator = new SchemaMigrator();
+
+        try (var con = _dbUtils.getConnection()) {
+            assertEquals(0, migrator.migrate(con));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package utils;
+
+import domain.models.Drug;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.DrugRepository;
+import repository.IDrugRepository;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for WriteQueue class.
+ */
+public class TestWriteQueue {
+    private static JdbcUtils _dbUtils;
+    private static IDrugRepository _drugRepo;
+    private WriteQueue _writeQueue;
+
+    @BeforeAll
+    public static void SetupDB() {
+        var props = new Properties();
+        try {
+            props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        } catch (IOException e) {
+            System.out.println("Cannot find " + TestConstants.TEST_CONFIG_FILE + ".\n");
+            e.printStackTrace();
+            return;
+        }
+
+        _drugRepo = new DrugRepository(props.getProperty("jdbc.url"));
+        _dbUtils = new JdbcUtils(props);
+        _drugRepo.clear();
+    }
+
+    @BeforeEach
+    public void CreateQueue() {
+        _writeQueue = new WriteQueue(_dbUtils, 16);
+    }
+
+    @AfterEach
+    public void ClearDB() {
+        _writeQueue.close();
+        _drugRepo.clear();
+    }
+
+    @Test
+    public void WritesQueuedWhileWriterIsBusy_Submit_AreCommittedTogether() {
+        var release = new CountDownLatch(1);
+        var blocker = _writeQueue.submit(con -> awaitRelease(release));
+        var futures = new ArrayList<CompletableFuture<Boolean>>();
+        for (var i = 0; i < 10; i++) {
+            var drug = new Drug.Builder().withName("drug-" + i).build();
+            futures.add(_writeQueue.submit(con -> _drugRepo.add(drug).isEmpty()));
+        }
+        release.countDown();
+
+        blocker.join();
+        for (var future : futures) {
+            assertTrue(future.join());
+        }
+        assertEquals(10, _drugRepo.getAll().size());
+        assertEquals(11, _writeQueue.getCommittedWrites());
+        assertTrue(_writeQueue.getCommittedBatches() <= 2);
+    }
+
+    @Test
+    public void FailingWriteInBatch_Submit_OnlyFailingWriteIsRolledBack() {
+        var release = new CountDownLatch(1);
+        var blocker = _writeQueue.submit(con -> awaitRelease(release));
+        var first = _writeQueue.submit(con -> _drugRepo.add(new Drug.Builder().withName("drug-1").build()));
+        var failing = _writeQueue.submit(con -> {
+            _drugRepo.add(new Drug.Builder().withName("drug-2").build());
+            throw new SQLException("Failed on purpose.");
+        });
+        var last = _writeQueue.submit(con -> _drugRepo.add(new Drug.Builder().withName("drug-3").build()));
+        release.countDown();
+
+        blocker.join();
+        first.join();
+        last.join();
+        var exception = assertThrows(CompletionException.class, failing::join);
+        var drugs = _drugRepo.getAll();
+
+        assertEquals("Failed on purpose.", exception.getCause().getMessage());
+        assertEquals(2, drugs.size());
+        assertEquals("drug-1", drugs.get(0).getName());
+        assertEquals("drug-3", drugs.get(1).getName());
+    }
+
+    @Test
+    public void ClosedQueue_Submit_FutureFails() {
+        _writeQueue.close();
+
+        var future = _writeQueue.submit(con -> null);
+
+        var exception = assertThrows(CompletionException.class, future::join);
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+
+    private Void awaitRelease(CountDownLatch release) {
+        try {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            fail(ex);
+        }
+
+        return null;
+    }
+}
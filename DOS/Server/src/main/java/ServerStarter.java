@@ -1,16 +1,37 @@
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
+import service.BackupService;
+import utils.Constants;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
 
 public class ServerStarter {
+    private static final String RESPONSE_TIMEOUT_PROPERTY = "sun.rmi.transport.tcp.responseTimeout";
+
     private static final Logger _logger = LogManager.getLogger();
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("restore")) {
+            restore(args);
+            return;
+        }
+
         _logger.info("Starting server.");
 
+        // Bounds the calls to the client observers, so a client that stops answering cannot hold a notifier thread forever.
+        // Read once by RMI, so it must be set before the first remote call.
+        if (System.getProperty(RESPONSE_TIMEOUT_PROPERTY) == null) {
+            System.setProperty(RESPONSE_TIMEOUT_PROPERTY, String.valueOf(Constants.CALLBACK_RESPONSE_TIMEOUT));
+        }
+
         System.out.println("Starting server...");
         try {
             var factory = new ClassPathXmlApplicationContext("classpath:spring-server.xml");
+            // Runs the destroy methods of the beans when the server stops, which close them and log their statistics.
+            factory.registerShutdownHook();
 
             _logger.info("Server started.");
 
@@ -21,4 +42,30 @@ public class ServerStarter {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Overwrites the database and its archive with a backup, run as {@code ServerStarter restore <backup file> <jdbc url>}.
+     * The server must be stopped while restoring.
+     */
+    private static void restore(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Usage: ServerStarter restore <backup file> <jdbc url>");
+            return;
+        }
+
+        _logger.info("Restoring backup {}.", args[1]);
+
+        System.out.println("Restoring backup...");
+        try {
+            BackupService.restore(args[2], Paths.get(args[1]));
+
+            _logger.info("Backup restored.");
+
+            System.out.println("Backup restored.");
+        } catch (IOException | SQLException e) {
+            _logger.fatal(e);
+
+            e.printStackTrace();
+        }
+    }
 }
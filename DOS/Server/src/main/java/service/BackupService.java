@@ -0,0 +1,329 @@
+package service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sqlite.SQLiteConnection;
+import utils.JdbcUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes online backups of the database with the SQLite backup API while the server keeps serving requests.
+ * The pages are copied in small steps from a reader connection that keeps one read transaction open for the whole backup,
+ * so the backup is a consistent snapshot of the database as it was when the backup started and writers are never blocked.
+ * Between two steps the backup pauses, leaving the disk to the requests being served.
+ * The archive database attached to it is copied in the same read transaction, to a file with the {@code -archive} suffix,
+ * so both files of a backup hold the same moment and archived orders never overlap the orders of the main database.
+ * Next to every backup a {@code .sha256} file holds the checksums of both files, which are verified before the backup is restored.
+ */
+public class BackupService implements AutoCloseable {
+    private static final String BACKUP_PREFIX = "DOS-";
+    private static final String BACKUP_EXTENSION = ".sqlite";
+    private static final String ARCHIVE_SUFFIX = "-archive";
+    private static final String CHECKSUM_EXTENSION = ".sha256";
+
+    private final JdbcUtils dbUtils;
+    private final Path directory;
+    private final long pauseMillis;
+    private final int retainedBackups;
+    private final ScheduledExecutorService scheduler;
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    /**
+     * @param jdbcUrl the URL of the database to back up.
+     * @param directory the directory the backups are written to.
+     * @param intervalMillis the time between two backups, or 0 to only back up when {@link #backup()} is called.
+     * @param pauseMillis the pause after every step of a backup.
+     * @param retainedBackups how many of the newest backups are kept, older ones are deleted after every backup.
+     */
+    public BackupService(String jdbcUrl, String directory, long intervalMillis, long pauseMillis, int retainedBackups) {
+        this(new JdbcUtils(JdbcUtils.propertiesFor(jdbcUrl)), directory, intervalMillis, pauseMillis, retainedBackups);
+    }
+
+    public BackupService(JdbcUtils dbUtils, String directory, long intervalMillis, long pauseMillis, int retainedBackups) {
+        _logger.info("Initializing Backup Service.");
+
+        this.dbUtils = dbUtils;
+        this.directory = Paths.get(directory);
+        this.pauseMillis = pauseMillis;
+        this.retainedBackups = retainedBackups;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "dos-backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::backupQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Copies the database, and its archive database if one is attached, to new files in the backup directory
+     * and writes their checksums next to them.
+     * The files only get their final names once both are complete, so an interrupted backup is never mistaken for a good one.
+     * @return the path of the backup of the main database; the archive is next to it, see {@link #archiveFile(Path)}.
+     * @throws SQLException if the database could not be copied.
+     * @throws IOException if the backup or its checksum could not be written.
+     */
+    public Path backup() throws SQLException, IOException {
+        _logger.traceEntry("Backing up database.");
+
+        Files.createDirectories(directory);
+        var timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        var target = directory.resolve(BACKUP_PREFIX + timestamp + BACKUP_EXTENSION);
+        var archiveTarget = archiveFile(target);
+        var partial = directory.resolve(target.getFileName() + ".part");
+        var archivePartial = directory.resolve(archiveTarget.getFileName() + ".part");
+
+        boolean archived;
+        try (var con = dbUtils.getReadOnlyConnection()) {
+            archived = hasArchive(con);
+            con.setAutoCommit(false);
+            try {
+                // Reading starts the transaction on each database, whose snapshot every step of the backup copies from.
+                readSchema(con, "main");
+                if (archived) {
+                    readSchema(con, "archive");
+                }
+
+                backupSchema(con, "main", partial);
+                if (archived) {
+                    backupSchema(con, "archive", archivePartial);
+                }
+            } finally {
+                con.rollback();
+                con.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            Files.deleteIfExists(partial);
+            Files.deleteIfExists(archivePartial);
+            throw ex;
+        }
+
+        var checksums = new StringBuilder();
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        checksums.append(checksum(target)).append("  ").append(target.getFileName()).append("\n");
+        if (archived) {
+            Files.move(archivePartial, archiveTarget, StandardCopyOption.ATOMIC_MOVE);
+            checksums.append(checksum(archiveTarget)).append("  ").append(archiveTarget.getFileName()).append("\n");
+        }
+        Files.writeString(checksumFile(target), checksums.toString());
+        deleteOldBackups();
+
+        _logger.traceExit("Backed up database to {}.", target);
+        return target;
+    }
+
+    /**
+     * Checks the files of a backup against the checksums written next to it.
+     * @param backup the path of the backup of the main database.
+     * @return {@code true} if the backup has a checksum file, and every file it lists exists and matches its checksum.
+     * @throws IOException if the backup could not be read.
+     */
+    public static boolean verify(Path backup) throws IOException {
+        _logger.traceEntry("Verifying backup {}.", backup);
+
+        var checksumFile = checksumFile(backup);
+        if (!Files.exists(checksumFile)) {
+            return _logger.traceExit(false);
+        }
+
+        for (var line : Files.readAllLines(checksumFile)) {
+            if (line.isBlank()) {
+                continue;
+            }
+
+            var fields = line.split("\\s+", 2);
+            var file = backup.resolveSibling(fields[1].trim());
+            if (!Files.exists(file) || !fields[0].equalsIgnoreCase(checksum(file))) {
+                return _logger.traceExit(false);
+            }
+        }
+
+        return _logger.traceExit(true);
+    }
+
+    /**
+     * Overwrites a database with a backup, after verifying its checksums.
+     * If the backup has an archive, the archive database of the target is overwritten too,
+     * so the restored orders and the archived ones come from the same moment.
+     * Meant to be run while the server is stopped, see {@code ServerStarter restore}.
+     * @param jdbcUrl the URL of the database to overwrite.
+     * @param backup the path of the backup of the main database.
+     * @throws IOException if the backup could not be read or does not match its checksum.
+     * @throws SQLException if the database could not be overwritten.
+     */
+    public static void restore(String jdbcUrl, Path backup) throws IOException, SQLException {
+        _logger.traceEntry("Restoring backup {}.", backup);
+
+        if (!verify(backup)) {
+            throw new IOException("Backup " + backup + " does not match its checksum.");
+        }
+
+        var archiveBackup = archiveFile(backup);
+        var archivePath = JdbcUtils.archivePathFor(JdbcUtils.propertiesFor(jdbcUrl));
+        if (Files.exists(archiveBackup) && archivePath == null) {
+            throw new SQLException("Backup " + backup + " has an archive, but " + jdbcUrl + " has no archive database to restore it to.");
+        }
+
+        try (var con = DriverManager.getConnection(jdbcUrl)) {
+            restoreSchema(con, "main", backup);
+            if (Files.exists(archiveBackup)) {
+                try (var attach = con.prepareStatement("ATTACH DATABASE ? AS archive;")) {
+                    attach.setString(1, archivePath);
+                    attach.execute();
+                }
+                restoreSchema(con, "archive", archiveBackup);
+            }
+        }
+
+        _logger.traceExit();
+    }
+
+    /**
+     * Stops the scheduled backups, waiting for a running one to finish.
+     */
+    @Override
+    public void close() {
+        _logger.info("Closing Backup Service.");
+
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                _logger.warn("Backup did not stop in time.");
+            }
+        } catch (InterruptedException ex) {
+            _logger.error(ex);
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void backupQuietly() {
+        try {
+            backup();
+        } catch (SQLException | IOException | RuntimeException ex) {
+            _logger.error(ex);
+        }
+    }
+
+    private void pause() {
+        if (pauseMillis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(pauseMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param backup the path of the backup of the main database.
+     * @return the path of the backup of its archive database, which only exists if the database had one attached.
+     */
+    public static Path archiveFile(Path backup) {
+        var name = backup.getFileName().toString();
+        var base = name.endsWith(BACKUP_EXTENSION) ? name.substring(0, name.length() - BACKUP_EXTENSION.length()) : name;
+
+        return backup.resolveSibling(base + ARCHIVE_SUFFIX + BACKUP_EXTENSION);
+    }
+
+    private static boolean hasArchive(Connection con) throws SQLException {
+        try (var statement = con.createStatement();
+             var result = statement.executeQuery("PRAGMA database_list;")) {
+            while (result.next()) {
+                if ("archive".equals(result.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static void readSchema(Connection con, String schema) throws SQLException {
+        try (var statement = con.createStatement();
+             var result = statement.executeQuery("SELECT COUNT(*) FROM " + schema + ".sqlite_master;")) {
+            result.next();
+        }
+    }
+
+    private void backupSchema(Connection con, String schema, Path target) throws SQLException {
+        var code = con.unwrap(SQLiteConnection.class).getDatabase()
+                .backup(schema, target.toString(), (remaining, pageCount) -> pause());
+        if (code != 0) {
+            throw new SQLException("Backup of " + schema + " failed with code " + code + ".");
+        }
+    }
+
+    private static void restoreSchema(Connection con, String schema, Path backup) throws SQLException {
+        var code = con.unwrap(SQLiteConnection.class).getDatabase().restore(schema, backup.toString(), null);
+        if (code != 0) {
+            throw new SQLException("Restore of " + schema + " failed with code " + code + ".");
+        }
+    }
+
+    private void deleteOldBackups() throws IOException {
+        var backups = new ArrayList<Path>();
+        try (var files = Files.newDirectoryStream(directory, BACKUP_PREFIX + "*" + BACKUP_EXTENSION)) {
+            for (var file : files) {
+                if (!file.getFileName().toString().endsWith(ARCHIVE_SUFFIX + BACKUP_EXTENSION)) {
+                    backups.add(file);
+                }
+            }
+        }
+
+        // The timestamps in the names sort the backups from the oldest to the newest.
+        Collections.sort(backups);
+        for (var backup : backups.subList(0, Math.max(0, backups.size() - retainedBackups))) {
+            _logger.info("Deleting old backup {}.", backup);
+
+            Files.deleteIfExists(backup);
+            Files.deleteIfExists(archiveFile(backup));
+            Files.deleteIfExists(checksumFile(backup));
+        }
+    }
+
+    private static Path checksumFile(Path backup) {
+        return backup.resolveSibling(backup.getFileName() + CHECKSUM_EXTENSION);
+    }
+
+    private static String checksum(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+}
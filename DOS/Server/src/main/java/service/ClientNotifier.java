@@ -0,0 +1,310 @@
+package service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import utils.AsyncUtils;
+import utils.Constants;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the observers of the logged in clients and pushes order and stock events to them
+ * without ever blocking the service call that raised the events.
+ * Every client has its own pending events, and at most one delivery to it is queued or running at a time:
+ * events raised meanwhile are merged into the next delivery, so a burst reaches a client as one call per kind of event.
+ * Deliveries run on a bounded executor; a delivery the full executor rejects is retried after a short delay.
+ * A client is disconnected, and gets no more events, if a call to it fails,
+ * if its pending events grow past the maximum while an earlier delivery to it is still queued or running,
+ * or if a delivery to it is still running after the slow threshold: a watchdog then disconnects it and interrupts the delivery.
+ * A call blocked reading from a client that stopped answering is not interruptible;
+ * it ends at the RMI response timeout set by {@code ServerStarter}, and only holds its thread until then.
+ */
+public class ClientNotifier implements AutoCloseable {
+    private enum EventKind {
+        ORDERS_PLACED,
+        ORDERS_COMPLETED,
+        ORDERS_CANCELLED,
+        STOCK_CHANGED
+    }
+
+    private final Map<String, Subscriber> subscribers;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+    private final int maxPendingEvents;
+    private final long slowThresholdMillis;
+    private final AtomicLong deliveries;
+    private final AtomicLong disconnectedClients;
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    /**
+     * @param threads the number of threads delivering events.
+     * @param queueCapacity the maximum number of deliveries waiting for a thread.
+     * @param maxPendingEvents the maximum number of events waiting for a client before it is disconnected.
+     * @param slowThresholdMillis the longest a delivery to a client may take before it is disconnected.
+     */
+    public ClientNotifier(int threads, int queueCapacity, int maxPendingEvents, long slowThresholdMillis) {
+        _logger.info("Initializing Client Notifier.");
+
+        this.maxPendingEvents = maxPendingEvents;
+        this.slowThresholdMillis = slowThresholdMillis;
+        subscribers = new ConcurrentHashMap<>();
+        executor = AsyncUtils.newBoundedDaemonExecutor("dos-notifier", threads, queueCapacity);
+        timer = AsyncUtils.newDaemonScheduler("dos-notifier-timer");
+        deliveries = new AtomicLong();
+        disconnectedClients = new AtomicLong();
+    }
+
+    /**
+     * Starts sending events to a client.
+     * @return {@code false} if a client with the same username is already registered, in which case nothing changes.
+     */
+    public boolean register(String username, IClientObserver observer) {
+        return subscribers.putIfAbsent(username, new Subscriber(username, observer)) == null;
+    }
+
+    /**
+     * Stops sending events to a client. Events already being delivered to it may still arrive.
+     * @return {@code false} if no client with the username was registered.
+     */
+    public boolean unregister(String username) {
+        return subscribers.remove(username) != null;
+    }
+
+    public boolean isRegistered(String username) {
+        return subscribers.containsKey(username);
+    }
+
+    public void ordersPlaced(Collection<Integer> orderIds) {
+        publish(EventKind.ORDERS_PLACED, orderIds);
+    }
+
+    public void ordersCompleted(Collection<Integer> orderIds) {
+        publish(EventKind.ORDERS_COMPLETED, orderIds);
+    }
+
+    public void ordersCancelled(Collection<Integer> orderIds) {
+        publish(EventKind.ORDERS_CANCELLED, orderIds);
+    }
+
+    public void stockChanged(Collection<Integer> drugIds) {
+        publish(EventKind.STOCK_CHANGED, drugIds);
+    }
+
+    /**
+     * Stops delivering events, dropping the pending ones.
+     */
+    @Override
+    public void close() {
+        _logger.info("Closing Client Notifier.");
+
+        subscribers.clear();
+        timer.shutdownNow();
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(slowThresholdMillis, TimeUnit.MILLISECONDS)) {
+                _logger.warn("Notifier did not stop in time.");
+            }
+        } catch (InterruptedException ex) {
+            _logger.error(ex);
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getDeliveries() {
+        return deliveries.get();
+    }
+
+    public long getDisconnectedClients() {
+        return disconnectedClients.get();
+    }
+
+    private void publish(EventKind kind, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        for (var subscriber : subscribers.values()) {
+            subscriber.offer(kind, ids);
+        }
+    }
+
+    private void disconnect(Subscriber subscriber, String reason) {
+        if (subscribers.remove(subscriber.username, subscriber)) {
+            _logger.warn("Disconnected client {}: {}", subscriber.username, reason);
+
+            disconnectedClients.incrementAndGet();
+        }
+    }
+
+    private class Subscriber implements Runnable {
+        private final String username;
+        private final IClientObserver observer;
+        private final Map<EventKind, Set<Integer>> pending;
+        private int pendingCount;
+        private boolean scheduled;
+        /**
+         * Whether a delivery is running and the watchdog has not stopped it; guarded by {@code watchdogLock}.
+         */
+        private boolean delivering;
+        private final Object watchdogLock = new Object();
+
+        private Subscriber(String username, IClientObserver observer) {
+            this.username = username;
+            this.observer = observer;
+            this.pending = new EnumMap<>(EventKind.class);
+        }
+
+        /**
+         * Adds events to the pending ones, scheduling a delivery unless one is already queued or running.
+         */
+        private void offer(EventKind kind, Collection<Integer> ids) {
+            var overflowed = false;
+            synchronized (this) {
+                var merged = pending.computeIfAbsent(kind, k -> new LinkedHashSet<>());
+                for (var id : ids) {
+                    if (merged.add(id)) {
+                        pendingCount++;
+                    }
+                }
+                if (scheduled && pendingCount > maxPendingEvents) {
+                    pending.clear();
+                    pendingCount = 0;
+                    overflowed = true;
+                } else if (scheduled) {
+                    return;
+                } else {
+                    scheduled = true;
+                }
+            }
+
+            if (overflowed) {
+                disconnect(this, "more than " + maxPendingEvents + " pending events.");
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (subscribers.get(username) != this) {
+                return;
+            }
+
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                // The events stay pending and the delivery stays scheduled, so later events do not queue it a second time.
+                _logger.warn("Notifier queue is full, retrying events for client {}.", username);
+
+                try {
+                    timer.schedule(this::schedule, Constants.NOTIFIER_RETRY_DELAY, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException closed) {
+                    _logger.warn("Notifier is closed, dropping events for client {}.", username);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            var batch = new EnumMap<EventKind, List<Integer>>(EventKind.class);
+            synchronized (this) {
+                pending.forEach((kind, ids) -> batch.put(kind, new ArrayList<>(ids)));
+                pending.clear();
+                pendingCount = 0;
+            }
+
+            var thread = Thread.currentThread();
+            synchronized (watchdogLock) {
+                delivering = true;
+            }
+            ScheduledFuture<?> watchdog;
+            try {
+                watchdog = timer.schedule(() -> stopDelivery(thread), slowThresholdMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException closed) {
+                return;
+            }
+            try {
+                deliver(batch);
+            } catch (RemoteException | RuntimeException ex) {
+                if (finishDelivery()) {
+                    disconnect(this, ex.getMessage());
+                }
+                return;
+            } finally {
+                watchdog.cancel(false);
+            }
+            if (!finishDelivery()) {
+                return;
+            }
+            deliveries.incrementAndGet();
+
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            // Queued again instead of delivered right away, so a busy client does not hold a thread from the others.
+            schedule();
+        }
+
+        /**
+         * Run by the watchdog when a delivery is still running after the slow threshold.
+         */
+        private void stopDelivery(Thread thread) {
+            synchronized (watchdogLock) {
+                if (!delivering) {
+                    return;
+                }
+                delivering = false;
+                thread.interrupt();
+            }
+
+            disconnect(this, "delivery took longer than " + slowThresholdMillis + " ms.");
+        }
+
+        /**
+         * Ends a delivery on its own thread.
+         * @return {@code false} if the watchdog stopped the delivery first, in which case its interrupt is cleared.
+         */
+        private boolean finishDelivery() {
+            synchronized (watchdogLock) {
+                if (delivering) {
+                    delivering = false;
+                    return true;
+                }
+            }
+
+            // The watchdog interrupted this thread inside the lock, so the interrupt is already set and is cleared here.
+            //noinspection ResultOfMethodCallIgnored
+            Thread.interrupted();
+            return false;
+        }
+
+        private void deliver(Map<EventKind, List<Integer>> batch) throws RemoteException {
+            for (var entry : batch.entrySet()) {
+                switch (entry.getKey()) {
+                    case ORDERS_PLACED -> observer.ordersPlaced(entry.getValue());
+                    case ORDERS_COMPLETED -> observer.ordersCompleted(entry.getValue());
+                    case ORDERS_CANCELLED -> observer.ordersCancelled(entry.getValue());
+                    case STOCK_CHANGED -> observer.stockChanged(entry.getValue());
+                }
+            }
+        }
+    }
+}
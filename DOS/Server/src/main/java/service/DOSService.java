@@ -1,7 +1,11 @@
 package service;
 
+import domain.dto.ChangeSet;
 import domain.dto.DrugDTO;
+import domain.dto.DrugFilter;
+import domain.dto.ImportReport;
 import domain.dto.OrderDTO;
+import domain.dto.OrderFilter;
 import domain.dto.UserDTO;
 import domain.models.Drug;
 import domain.models.Order;
@@ -11,33 +15,68 @@ import org.apache.logging.log4j.Logger;
 import repository.IDrugRepository;
 import repository.IOrderRepository;
 import repository.IUserRepository;
+import repository.RepositoryException;
+import repository.VersionConflictException;
 import utils.Constants;
 import utils.PasswordUtils;
+import utils.WriteQueue;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.sql.Date;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class DOSService implements IDOSService {
     private final IUserRepository userRepo;
     private final IDrugRepository drugRepo;
     private final IOrderRepository orderRepo;
-
-    private final Map<String, IClientObserver> loggedClients;
+    private final WriteQueue writeQueue;
+    private final ClientNotifier notifier;
+    private final SnapshotCache<List<DrugDTO>> availableDrugs;
+    private final SnapshotCache<List<OrderDTO>> orders;
+    private final SingleFlight<String, List<DrugDTO>> searches;
+    private final SingleFlight<Long, ChangeSet> changeReads;
 
     private static final Logger _logger = LogManager.getLogger();
 
     public DOSService(IUserRepository userRepo, IDrugRepository drugRepo, IOrderRepository orderRepo) {
+        this(userRepo, drugRepo, orderRepo, null);
+    }
+
+    /**
+     * @param writeQueue the queue every mutation is committed through, or {@code null} to write on the calling thread.
+     */
+    public DOSService(IUserRepository userRepo, IDrugRepository drugRepo, IOrderRepository orderRepo, WriteQueue writeQueue) {
+        this(userRepo, drugRepo, orderRepo, writeQueue, new ClientNotifier(
+                Constants.DEFAULT_NOTIFIER_THREADS,
+                Constants.NOTIFIER_QUEUE_CAPACITY,
+                Constants.MAX_PENDING_NOTIFICATIONS,
+                Constants.SLOW_OBSERVER_THRESHOLD));
+    }
+
+    /**
+     * @param writeQueue the queue every mutation is committed through, or {@code null} to write on the calling thread.
+     * @param notifier the notifier keeping the logged in clients, which are told about placed, completed and cancelled orders.
+     */
+    public DOSService(IUserRepository userRepo, IDrugRepository drugRepo, IOrderRepository orderRepo, WriteQueue writeQueue, ClientNotifier notifier) {
         _logger.info("Initializing DOS Service.");
 
         this.userRepo = userRepo;
         this.drugRepo = drugRepo;
         this.orderRepo = orderRepo;
+        this.writeQueue = writeQueue;
+        this.notifier = notifier;
 
-        loggedClients = new ConcurrentHashMap<>();
+        availableDrugs = new SnapshotCache<>("available drugs", this::loadAvailableDrugs, Constants.SNAPSHOT_MAX_AGE);
+        orders = new SnapshotCache<>("orders", this::loadOrders, Constants.SNAPSHOT_MAX_AGE);
+        searches = new SingleFlight<>();
+        changeReads = new SingleFlight<>();
     }
 
     @Override
@@ -54,7 +93,7 @@ public class DOSService implements IDOSService {
         var encryptedPassword = PasswordUtils.encryptPassword(loginDetails.getPassword(), userDetails.get().getSalt());
         if (encryptedPassword.equals(userDetails.get().getEncryptedPassword())) {
 
-            if (loggedClients.get(loginDetails.getUserName()) != null) {
+            if (notifier.isRegistered(loginDetails.getUserName())) {
                 _logger.warn("User already logged in.");
 
                 throw _logger.traceExit(new ServerException("User already logged in."));
@@ -62,8 +101,10 @@ public class DOSService implements IDOSService {
 
             if (client == null) {
                 _logger.error("Client is null.");
-            } else {
-                loggedClients.put(loginDetails.getUserName(), client);
+            } else if (!notifier.register(loginDetails.getUserName(), client)) {
+                _logger.warn("User already logged in.");
+
+                throw _logger.traceExit(new ServerException("User already logged in."));
             }
 
             _logger.traceExit("Logged in user {}.", userDetails.get());
@@ -79,8 +120,7 @@ public class DOSService implements IDOSService {
     public void logoutUser(String username) {
         _logger.info("Logging user: {} out.", username);
 
-        var localClient = loggedClients.remove(username);
-        if (localClient == null) {
+        if (!notifier.unregister(username)) {
             _logger.warn("No user logged in with username {}.", username);
         }
     }
@@ -94,7 +134,7 @@ public class DOSService implements IDOSService {
             toAdd.setEncryptedPassword(PasswordUtils.encryptPassword(toAdd.getEncryptedPassword(), toAdd.getSalt()));
         }
 
-        var response = userRepo.add(toAdd);
+        var response = write(() -> userRepo.add(toAdd));
 
         if (response.isEmpty()) {
             _logger.traceExit("User added.");
@@ -110,27 +150,33 @@ public class DOSService implements IDOSService {
     public boolean changePassword(Integer userId, String oldPassword, String newPassword) {
         _logger.traceEntry("Trying to change the password for {}.", userId);
 
-        var user = userRepo.getById(userId);
+        var result = writeWithRetries(() -> {
+            var user = userRepo.getById(userId);
 
-        if (user.isEmpty()) {
-            _logger.traceExit("No user with given id.");
+            if (user.isEmpty()) {
+                _logger.traceExit("No user with given id.");
 
-            return false;
-        }
+                return false;
+            }
 
-        if (!user.get().getEncryptedPassword().equals(PasswordUtils.encryptPassword(oldPassword, user.get().getSalt()))) {
-            _logger.traceExit("Old password isn't correct.");
+            if (!user.get().getEncryptedPassword().equals(PasswordUtils.encryptPassword(oldPassword, user.get().getSalt()))) {
+                _logger.traceExit("Old password isn't correct.");
 
-            return false;
-        }
+                return false;
+            }
 
-        user.get().setEncryptedPassword(PasswordUtils.encryptPassword(newPassword, user.get().getSalt()));
-        user.get().setNextPasswordChange(new Date(System.currentTimeMillis() + Constants.DISTANCE_BETWEEN_PASSWORD_CHANGES));
+            user.get().setEncryptedPassword(PasswordUtils.encryptPassword(newPassword, user.get().getSalt()));
+            user.get().setNextPasswordChange(new Date(System.currentTimeMillis() + Constants.DISTANCE_BETWEEN_PASSWORD_CHANGES));
 
-        var result = userRepo.update(user.get());
-        if (result.isEmpty()) {
-            _logger.traceExit("User could not be updated.");
+            if (!userRepo.modify(user.get())) {
+                _logger.traceExit("User could not be updated.");
 
+                return false;
+            }
+
+            return true;
+        });
+        if (!result) {
             return false;
         }
 
@@ -139,11 +185,33 @@ public class DOSService implements IDOSService {
         return true;
     }
 
+    /**
+     * @return the available drugs of the current snapshot, shared by every caller until a write invalidates it.
+     */
     @Override
     public List<DrugDTO> getAvailableDrugs() {
+        return readSnapshot(availableDrugs);
+    }
+
+    private List<DrugDTO> loadAvailableDrugs() {
         _logger.traceEntry("Getting all available drugs.");
 
         var drugs = drugRepo.getAvailableDrugs();
+        var converted = drugs
+                .stream()
+                .map(d -> new DrugDTO(d.getId(),false, d.getName(), d.getDescription(), d.getInStock(), 0))
+                .collect(Collectors.toUnmodifiableList());
+
+        _logger.traceExit("Got {} drugs.", drugs.size());
+
+        return converted;
+    }
+
+    @Override
+    public List<DrugDTO> getAvailableDrugsPage(Integer afterId, int limit) {
+        _logger.traceEntry("Getting page of available drugs after ID: {}.", afterId);
+
+        var drugs = drugRepo.getPage(afterId, limit, new DrugFilter.Builder().withAvailableOnly(true).build());
         var converted = drugs
                 .stream()
                 .map(d -> new DrugDTO(d.getId(),false, d.getName(), d.getDescription(), d.getInStock(), 0))
@@ -154,6 +222,69 @@ public class DOSService implements IDOSService {
         return converted;
     }
 
+    /**
+     * Identical searches made while one is running share its result.
+     */
+    @Override
+    public List<DrugDTO> searchDrugs(String query, int limit) {
+        return searches.join(limit + ":" + query, () -> runSearch(query, limit));
+    }
+
+    private List<DrugDTO> runSearch(String query, int limit) {
+        _logger.traceEntry("Searching available drugs for: {}.", query);
+
+        var drugs = drugRepo.searchDrugs(query, limit, new DrugFilter.Builder().withAvailableOnly(true).build());
+        var converted = drugs
+                .stream()
+                .map(d -> new DrugDTO(d.getId(),false, d.getName(), d.getDescription(), d.getInStock(), 0))
+                .collect(Collectors.toUnmodifiableList());
+
+        _logger.traceExit("Found {} drugs.", drugs.size());
+
+        return converted;
+    }
+
+    @Override
+    public ImportReport importDrugCatalog(String csv) {
+        if (csv == null) {
+            _logger.error("Null drug catalog received.");
+
+            return null;
+        }
+
+        _logger.traceEntry("Importing drug catalog of {} characters.", csv.length());
+
+        // Batches imported before a failure stay committed, so the drugs are invalidated either way.
+        try (var reader = new StringReader(csv)) {
+            var report = drugRepo.importCsv(reader, Constants.DEFAULT_IMPORT_BATCH_SIZE);
+            availableDrugs.invalidate();
+
+            _logger.traceExit("Imported {} drugs.", report.getRowsImported());
+            return report;
+        } catch (IOException ex) {
+            _logger.error(ex);
+
+            availableDrugs.invalidate();
+            return _logger.traceExit(null);
+        }
+    }
+
+    @Override
+    public String exportDrugCatalog() {
+        _logger.traceEntry("Exporting drug catalog.");
+
+        try (var writer = new StringWriter()) {
+            var exported = drugRepo.exportCsv(writer);
+
+            _logger.traceExit("Exported {} drugs.", exported);
+            return writer.toString();
+        } catch (IOException ex) {
+            _logger.error(ex);
+
+            return _logger.traceExit(null);
+        }
+    }
+
     @Override
     public boolean placeOrder(Order order) {
         _logger.traceEntry("Placing order. {}", order);
@@ -162,9 +293,14 @@ public class DOSService implements IDOSService {
             order.setDeliveredAt(new Date(System.currentTimeMillis() + Constants.DEFAULT_DRUG_DELIVERY_ETA));
         }
 
-        var result = orderRepo.placeOrder(order);
+        var result = write(() -> orderRepo.placeOrder(order));
 
         if (result.isEmpty()) {
+            availableDrugs.invalidate();
+            orders.invalidate();
+            notifier.ordersPlaced(List.of(order.getId()));
+            notifier.stockChanged(order.getDrugs().keySet());
+
             _logger.traceExit("Order placed.");
         } else {
             _logger.traceExit("Order not placed.");
@@ -173,52 +309,83 @@ public class DOSService implements IDOSService {
         return result.isEmpty();
     }
 
+    /**
+     * @return the orders of the current snapshot, shared by every caller until a write invalidates it.
+     */
     @Override
     public List<OrderDTO> getOrders() {
+        return readSnapshot(orders);
+    }
+
+    private List<OrderDTO> loadOrders() {
         _logger.traceEntry("Getting all orders.");
 
-        var orders = orderRepo.getAll();
-        var converted = orders
-                .stream()
-                .map(d -> {
-                    var user = userRepo.getById(d.getOrderedBy());
-                    var name = user.map(value -> value.getFirstName() + " " + value.getLastName()).orElseGet(() -> d.getOrderedBy().toString());
-                    return new OrderDTO(d.getId(), name, d.getDelivered(), d.getOrderedAt(), d.getDeliveredAt());
-                })
-                .collect(Collectors.toList());
+        var summaries = List.copyOf(orderRepo.getOrderSummaries(null));
+
+        _logger.traceExit("Got {} orders.", summaries.size());
+
+        return summaries;
+    }
+
+    @Override
+    public List<OrderDTO> getOrdersPage(Integer afterId, int limit, OrderFilter filter) {
+        _logger.traceEntry("Getting page of orders after ID: {}.", afterId);
+
+        List<OrderDTO> orders;
+        try {
+            orders = orderRepo.getOrderSummaries(afterId, limit, filter);
+        } catch (RepositoryException ex) {
+            _logger.error(ex);
+
+            throw _logger.traceExit(new ServerException(ex.getMessage()));
+        }
 
         _logger.traceExit("Got {} orders.", orders.size());
 
-        return converted;
+        return orders;
     }
 
     @Override
-    public boolean updateUser(User updatedUser) {
-        _logger.traceEntry("Adding user.");
+    public User updateUser(User updatedUser) {
+        _logger.traceEntry("Updating user.");
 
-        var response = userRepo.update(updatedUser);
+        boolean response;
+        try {
+            response = write(() -> userRepo.modify(updatedUser));
+        } catch (VersionConflictException ex) {
+            _logger.warn(ex.getMessage());
 
-        if (response.isEmpty()) {
+            response = false;
+        }
+
+        if (!response) {
             _logger.traceExit("User could not be updated.");
-            return false;
+            return null;
         }
 
-        return true;
+        // The order summaries show the names of the users who placed them.
+        orders.invalidate();
+        // The repository set the version the user is stored at, which the client needs for its next update.
+        return _logger.traceExit(updatedUser);
     }
 
     @Override
     public void completeOrder(Integer orderId) {
-        var order = orderRepo.getById(orderId);
-
-        if (order.isPresent()) {
-            order.get().setDelivered(true);
-            orderRepo.update(order.get());
+        if (write(() -> orderRepo.completeOrder(orderId))) {
+            orders.invalidate();
+            notifier.ordersCompleted(List.of(orderId));
         }
     }
 
     @Override
     public void cancelOrder(Integer orderId) {
-        orderRepo.remove(orderId);
+        var cancelled = write(() -> orderRepo.cancelOrder(orderId));
+        if (cancelled.isPresent()) {
+            availableDrugs.invalidate();
+            orders.invalidate();
+            notifier.ordersCancelled(List.of(orderId));
+            notifier.stockChanged(cancelled.get().getDrugs().keySet());
+        }
     }
 
     @Override
@@ -227,4 +394,123 @@ public class DOSService implements IDOSService {
 
         return order.orElse(null);
     }
+
+    @Override
+    public Map<Integer, Drug> getDrugsByIds(Collection<Integer> drugIds) {
+        _logger.traceEntry("Getting drugs with IDs: {}.", drugIds);
+
+        var drugs = drugRepo.getByIds(drugIds);
+
+        _logger.traceExit("Got {} drugs.", drugs.size());
+
+        return drugs;
+    }
+
+    /**
+     * Identical reads made while one is running share its change set, like the full loads of clients starting together.
+     */
+    @Override
+    public ChangeSet getChangesSince(long version) {
+        return changeReads.join(version, () -> readChangesSince(version));
+    }
+
+    private ChangeSet readChangesSince(long version) {
+        _logger.traceEntry("Getting changes after version: {}.", version);
+
+        // Changes committed while the lists are read are left to the next call, whatever their version.
+        var upToVersion = drugRepo.getChangeLogVersion();
+        var changedDrugs = drugRepo.getChangedSince(version, upToVersion)
+                .stream()
+                .map(d -> new DrugDTO(d.getId(),false, d.getName(), d.getDescription(), d.getInStock(), 0))
+                .collect(Collectors.toUnmodifiableList());
+        var changes = new ChangeSet(version, upToVersion,
+                changedDrugs, List.copyOf(drugRepo.getDeletedSince(version, upToVersion)),
+                List.copyOf(orderRepo.getChangedSince(version, upToVersion)), List.copyOf(orderRepo.getDeletedSince(version, upToVersion)));
+
+        _logger.info("Got {} changed drugs and {} changed orders up to version {}.", changedDrugs.size(), changes.getChangedOrders().size(), upToVersion);
+
+        return changes;
+    }
+
+    /**
+     * Logs how many reads the snapshot caches served and how many calls shared a running one instead of reaching the database.
+     */
+    public void logStatistics() {
+        logStatistics(availableDrugs);
+        logStatistics(orders);
+        logStatistics("drug search", searches);
+        logStatistics("change read", changeReads);
+    }
+
+    /**
+     * Logs the read statistics, run when the server stops.
+     */
+    public void close() {
+        _logger.info("Closing DOS Service.");
+
+        logStatistics();
+    }
+
+    private void logStatistics(SnapshotCache<?> cache) {
+        _logger.info("{} snapshot: {} hits, {} loads, {} deduplicated loads.", cache.getName(), cache.getHits(), cache.getLoads(), cache.getDeduplicatedLoads());
+    }
+
+    private void logStatistics(String name, SingleFlight<?, ?> flight) {
+        _logger.info("{} calls: {} made, {} executed, {} deduplicated.", name, flight.getCalls(), flight.getExecutions(), flight.getDeduplicated());
+    }
+
+    /**
+     * Reads a snapshot, telling the client that the read failed instead of serving an empty list.
+     * @throws ServerException if the snapshot had to be loaded and the repository could not read it.
+     */
+    private <T> T readSnapshot(SnapshotCache<T> cache) {
+        try {
+            return cache.get();
+        } catch (RepositoryException ex) {
+            _logger.error(ex);
+
+            throw new ServerException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Runs a mutation through the {@link WriteQueue}, waiting for the commit of its batch.
+     * @throws ServerException if the batch of the mutation could not be committed.
+     */
+    private <T> T write(Supplier<T> mutation) {
+        if (writeQueue == null) {
+            return mutation.get();
+        }
+
+        try {
+            return writeQueue.submit(con -> mutation.get()).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            _logger.error(ex.getCause());
+
+            throw new ServerException("Changes could not be saved.");
+        }
+    }
+
+    /**
+     * Runs a read-modify-write mutation through {@link #write}, running it again on fresh data
+     * as long as another update of the same entity got in between, up to {@link Constants#MAX_WRITE_ATTEMPTS} times.
+     * @throws VersionConflictException if the last attempt still conflicted.
+     */
+    private <T> T writeWithRetries(Supplier<T> mutation) {
+        for (var attempt = 1; ; attempt++) {
+            try {
+                return write(mutation);
+            } catch (VersionConflictException ex) {
+                if (attempt >= Constants.MAX_WRITE_ATTEMPTS) {
+                    throw ex;
+                }
+
+                _logger.warn("Attempt {} conflicted, retrying: {}", attempt, ex.getMessage());
+            }
+        }
+    }
 }
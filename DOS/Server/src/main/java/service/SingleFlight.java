@@ -0,0 +1,108 @@
+package service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: the first call for a key runs on its own thread,
+ * and the calls for the same key made while it runs share its {@link CompletableFuture} instead of running again.
+ * A call made after the running one finished runs again, so results are never kept.
+ * Shared results go to every caller, so they must not be modified.
+ * A call must not make a call for its own key, which would wait for itself.
+ * @param <K> the type of the keys telling identical calls apart, which must implement equals and hashCode.
+ * @param <V> the type of the results.
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight;
+    private final AtomicLong calls;
+    private final AtomicLong executions;
+    private final AtomicLong deduplicated;
+
+    public SingleFlight() {
+        inFlight = new ConcurrentHashMap<>();
+        calls = new AtomicLong();
+        executions = new AtomicLong();
+        deduplicated = new AtomicLong();
+    }
+
+    /**
+     * Runs the call on the calling thread, unless an identical call is already running.
+     * @param key the key of the call.
+     * @param call the call to run.
+     * @return the future of the running call for the key, or a completed future with the result of this call.
+     */
+    public CompletableFuture<V> call(K key, Supplier<V> call) {
+        calls.incrementAndGet();
+
+        var flight = new CompletableFuture<V>();
+        var running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            deduplicated.incrementAndGet();
+            return running;
+        }
+
+        executions.incrementAndGet();
+        // The key is freed before completing, so calls made after the result exists run again instead of sharing it.
+        try {
+            var result = call.get();
+            inFlight.remove(key, flight);
+            flight.complete(result);
+        } catch (RuntimeException | Error ex) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(ex);
+        }
+
+        return flight;
+    }
+
+    /**
+     * Like {@link #call(Object, Supplier)}, but waits for the result.
+     * @return the result of the running call for the key, or of this call.
+     * @throws RuntimeException the exception thrown by the call whose result is shared.
+     */
+    public V join(K key, Supplier<V> call) {
+        try {
+            return call(key, call).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * @return the number of calls made, whether they ran or shared a running call.
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return the number of calls that ran.
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * @return the number of calls that shared the result of a running call instead of running.
+     */
+    public long getDeduplicated() {
+        return deduplicated.get();
+    }
+
+    /**
+     * @return the number of keys with a running call.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
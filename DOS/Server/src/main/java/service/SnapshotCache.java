@@ -0,0 +1,149 @@
+package service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the last snapshot of a read model, so reads only cost an atomic read until the model changes.
+ * Writers call {@link #invalidate()} after committing, which moves the cache to a new version;
+ * the first read after that loads a new snapshot, and the readers missing it meanwhile share that load through a
+ * {@link SingleFlight} instead of loading it too.
+ * A snapshot loaded while an invalidation happened keeps the older version, so it is never served.
+ * Snapshots also expire after a maximum age, bounding how stale they get when the data changes behind the service.
+ * A load that throws publishes nothing: its exception reaches every reader sharing the load, and the next read loads again.
+ * @param <T> the type of the read model, which must not be modified once loaded.
+ */
+public class SnapshotCache<T> {
+    /**
+     * A read model together with the version of the cache it was loaded at.
+     */
+    public static class Snapshot<T> {
+        private final long version;
+        private final long loadedAt;
+        private final T value;
+
+        private Snapshot(long version, long loadedAt, T value) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.value = value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+
+    private final String name;
+    private final Supplier<T> loader;
+    private final long maxAgeMillis;
+    private final AtomicLong version;
+    private final AtomicReference<Snapshot<T>> current;
+    private final SingleFlight<Long, Snapshot<T>> pendingLoads;
+    private final AtomicLong hits;
+    private final AtomicLong loads;
+
+    private static final Logger _logger = LogManager.getLogger();
+
+    /**
+     * @param name the name of the read model, used in the logs.
+     * @param loader loads the read model from the repositories, throwing if it could not be read.
+     * @param maxAgeMillis how long a snapshot is served at most, or 0 to keep it until it is invalidated.
+     */
+    public SnapshotCache(String name, Supplier<T> loader, long maxAgeMillis) {
+        this.name = name;
+        this.loader = loader;
+        this.maxAgeMillis = maxAgeMillis;
+        version = new AtomicLong();
+        current = new AtomicReference<>();
+        pendingLoads = new SingleFlight<>();
+        hits = new AtomicLong();
+        loads = new AtomicLong();
+    }
+
+    /**
+     * @return the read model of the current snapshot, loaded first if the snapshot is missing, invalidated or expired.
+     */
+    public T get() {
+        return getSnapshot().getValue();
+    }
+
+    /**
+     * @return the current snapshot, loaded first if it is missing, invalidated or expired.
+     */
+    public Snapshot<T> getSnapshot() {
+        var snapshot = current.get();
+        if (isCurrent(snapshot)) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+
+        var loadedVersion = version.get();
+        return pendingLoads.join(loadedVersion, () -> load(loadedVersion));
+    }
+
+    /**
+     * Marks the current snapshot as outdated, so the next read loads a new one.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * @return the number of reads that shared a load already running instead of loading.
+     */
+    public long getDeduplicatedLoads() {
+        return pendingLoads.getDeduplicated();
+    }
+
+    private Snapshot<T> load(long loadedVersion) {
+        // A load for the same version may have finished between the first check and this one.
+        var snapshot = current.get();
+        if (isCurrent(snapshot)) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+
+        _logger.info("Loading {} snapshot.", name);
+
+        var loaded = new Snapshot<>(loadedVersion, System.currentTimeMillis(), loader.get());
+        loads.incrementAndGet();
+        // Loads for different versions may overlap, and an older one finishing last must not replace a newer one.
+        current.accumulateAndGet(loaded, (previous, next) ->
+                previous == null || previous.getVersion() <= next.getVersion() ? next : previous);
+        return loaded;
+    }
+
+    private boolean isCurrent(Snapshot<T> snapshot) {
+        return snapshot != null
+                && snapshot.getVersion() == version.get()
+                && (maxAgeMillis <= 0 || System.currentTimeMillis() - snapshot.getLoadedAt() <= maxAgeMillis);
+    }
+}
@@ -0,0 +1,206 @@
+package service;
+
+import domain.models.Drug;
+import domain.models.Order;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import repository.DrugRepository;
+import repository.IDrugRepository;
+import repository.IOrderRepository;
+import repository.OrderRepository;
+import utils.JdbcUtils;
+import utils.TestConstants;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBackupService {
+    private static final int SEEDED_DRUGS = 2000;
+
+    private static IDrugRepository _drugRepo;
+    private static IOrderRepository _orderRepo;
+    private static BackupService _backupService;
+    private static Path _directory;
+
+    @BeforeAll
+    public static void SetupService() throws IOException, SQLException {
+        var props = new Properties();
+        props.load(new FileReader(TestConstants.TEST_JAVA_DIRECTORY + '/' + TestConstants.TEST_CONFIG_FILE));
+        var dbUtils = new JdbcUtils(props);
+
+        _drugRepo = new DrugRepository(props.getProperty("jdbc.url"));
+        _drugRepo.clear();
+        _orderRepo = new OrderRepository(props.getProperty("jdbc.url"));
+        _orderRepo.clear();
+        dbUtils.inTransaction(con -> {
+            for (var i = 0; i < SEEDED_DRUGS; i++) {
+                _drugRepo.add(new Drug.Builder().withName("drug-" + i).withDescription("description ".repeat(20)).build());
+            }
+            return null;
+        });
+
+        _directory = Files.createTempDirectory("dos-backups");
+        _backupService = new BackupService(dbUtils, _directory.toString(), 0, 1, 2);
+    }
+
+    @AfterAll
+    public static void ClearDB() {
+        _backupService.close();
+        _drugRepo.clear();
+        _orderRepo.clear();
+
+        var files = _directory.toFile().listFiles();
+        if (files != null) {
+            for (var file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(_directory.toFile().delete());
+    }
+
+    @Test
+    public void DatabaseUnderWriteLoad_Backup_BackupIsConsistentSnapshot() throws Exception {
+        var stop = new AtomicBoolean();
+        var written = new AtomicInteger();
+        var writer = Executors.newSingleThreadExecutor();
+        writer.submit(() -> {
+            while (!stop.get()) {
+                _drugRepo.add(new Drug.Builder().withName("written-" + written.get()).build());
+                written.incrementAndGet();
+            }
+        });
+
+        Path backup;
+        int writtenBefore;
+        try {
+            Thread.sleep(50);
+            writtenBefore = written.get();
+            backup = _backupService.backup();
+        } finally {
+            stop.set(true);
+            writer.shutdown();
+            assertTrue(writer.awaitTermination(1, TimeUnit.MINUTES));
+        }
+
+        assertTrue(BackupService.verify(backup));
+        try (var con = DriverManager.getConnection("jdbc:sqlite:" + backup);
+             var statement = con.createStatement()) {
+            try (var result = statement.executeQuery("PRAGMA integrity_check;")) {
+                assertTrue(result.next());
+                assertEquals("ok", result.getString(1));
+            }
+            try (var result = statement.executeQuery("SELECT COUNT(*) FROM drugs;")) {
+                assertTrue(result.next());
+                assertTrue(result.getInt(1) >= SEEDED_DRUGS + writtenBefore);
+                assertTrue(result.getInt(1) <= SEEDED_DRUGS + written.get());
+            }
+        }
+        assertTrue(written.get() > writtenBefore);
+    }
+
+    @Test
+    public void Backup_Restore_RestoredDatabaseMatchesBackup() throws Exception {
+        var backup = _backupService.backup();
+        var restored = _directory.resolve("restored.sqlite");
+
+        try {
+            BackupService.restore("jdbc:sqlite:" + restored, backup);
+
+            try (var con = DriverManager.getConnection("jdbc:sqlite:" + restored);
+                 var statement = con.createStatement();
+                 var result = statement.executeQuery("SELECT COUNT(*) FROM drugs WHERE name LIKE 'drug-%';")) {
+                assertTrue(result.next());
+                assertEquals(SEEDED_DRUGS, result.getInt(1));
+            }
+        } finally {
+            Files.deleteIfExists(restored);
+            Files.deleteIfExists(_directory.resolve("restored-archive.sqlite"));
+        }
+    }
+
+    @Test
+    public void DatabaseWithArchivedOrders_BackupThenRestore_ArchiveIsRestoredWithIt() throws Exception {
+        var longAgo = new Date(System.currentTimeMillis() - 10 * 86400000L);
+        var archivedOrder = new Order.Builder().withDeliveredAt(longAgo).withDrugs(Map.of(1, 2)).build();
+        var hotOrder = new Order.Builder().withDrugs(Map.of(1, 3)).build();
+        _orderRepo.add(archivedOrder);
+        _orderRepo.add(hotOrder);
+        assertEquals(1, _orderRepo.archiveOrders(new Date(System.currentTimeMillis() - 86400000L), 10));
+        var restored = _directory.resolve("with-archive.sqlite");
+        var restoredArchive = _directory.resolve("with-archive-archive.sqlite");
+
+        try {
+            var backup = _backupService.backup();
+            BackupService.restore("jdbc:sqlite:" + restored, backup);
+
+            assertTrue(Files.exists(BackupService.archiveFile(backup)));
+            try (var con = DriverManager.getConnection("jdbc:sqlite:" + restored);
+                 var statement = con.createStatement()) {
+                statement.execute("ATTACH DATABASE '" + restoredArchive + "' AS archive;");
+                try (var result = statement.executeQuery("SELECT id FROM main.orders;")) {
+                    assertTrue(result.next());
+                    assertEquals(hotOrder.getId(), result.getInt(1));
+                    assertFalse(result.next());
+                }
+                try (var result = statement.executeQuery("SELECT id FROM archive.orders;")) {
+                    assertTrue(result.next());
+                    assertEquals(archivedOrder.getId(), result.getInt(1));
+                    assertFalse(result.next());
+                }
+                try (var result = statement.executeQuery("SELECT quantity FROM archive.order_details WHERE order_id = " + archivedOrder.getId() + ";")) {
+                    assertTrue(result.next());
+                    assertEquals(2, result.getInt(1));
+                }
+            }
+        } finally {
+            _orderRepo.clear();
+            Files.deleteIfExists(restored);
+            Files.deleteIfExists(restoredArchive);
+        }
+    }
+
+    @Test
+    public void CorruptedBackup_Restore_IOExceptionThrown() throws Exception {
+        var backup = _backupService.backup();
+        var restored = _directory.resolve("corrupted.sqlite");
+        Files.write(backup, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        var exception = assertThrows(IOException.class, () -> BackupService.restore("jdbc:sqlite:" + restored, backup));
+
+        assertFalse(BackupService.verify(backup));
+        assertEquals("Backup " + backup + " does not match its checksum.", exception.getMessage());
+        assertFalse(Files.exists(restored));
+    }
+
+    @Test
+    public void MoreBackupsThanRetained_Backup_OldestBackupsDeleted() throws Exception {
+        var first = _backupService.backup();
+        Thread.sleep(5);
+        _backupService.backup();
+        Thread.sleep(5);
+        var last = _backupService.backup();
+
+        try (var files = Files.list(_directory)) {
+            assertEquals(2, files.filter(f -> f.toString().endsWith(".sqlite") && !f.toString().endsWith("-archive.sqlite")).count());
+        }
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(BackupService.archiveFile(first)));
+        assertFalse(Files.exists(Path.of(first + ".sha256")));
+        assertTrue(BackupService.verify(last));
+    }
+}
@@ -0,0 +1,181 @@
+package service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ClientNotifier class.
+ */
+public class TestClientNotifier {
+    private static final long SLOW_THRESHOLD_MILLIS = 500L;
+
+    private ClientNotifier _notifier;
+
+    @BeforeEach
+    public void SetupNotifier() {
+        _notifier = new ClientNotifier(2, 10, 100, SLOW_THRESHOLD_MILLIS);
+    }
+
+    @AfterEach
+    public void CloseNotifier() {
+        _notifier.close();
+    }
+
+    @Test
+    public void BurstWhileClientIsBusy_Publish_EventsAreCoalescedIntoOneCall() throws Exception {
+        var observer = new RecordingObserver(0);
+        _notifier.register("user", observer);
+
+        _notifier.ordersPlaced(List.of(0));
+        assertTrue(observer.firstCall.await(5, TimeUnit.SECONDS));
+        for (var i = 1; i <= 50; i++) {
+            _notifier.ordersPlaced(List.of(i));
+        }
+        observer.release.countDown();
+        waitFor(() -> observer.placed.stream().mapToInt(List::size).sum() == 51);
+
+        assertEquals(2, observer.placed.size());
+        assertEquals(List.of(0), observer.placed.get(0));
+        assertEquals(50, observer.placed.get(1).size());
+        assertTrue(_notifier.isRegistered("user"));
+    }
+
+    @Test
+    public void SlowClient_Publish_ClientIsDisconnectedWithoutBlockingTheCaller() throws Exception {
+        var observer = new RecordingObserver(SLOW_THRESHOLD_MILLIS * 2);
+        observer.release.countDown();
+        _notifier.register("slow-user", observer);
+
+        var start = System.nanoTime();
+        _notifier.stockChanged(List.of(1, 2, 3));
+        var publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        waitFor(() -> !_notifier.isRegistered("slow-user"));
+
+        assertTrue(publishMillis < SLOW_THRESHOLD_MILLIS);
+        assertEquals(1, _notifier.getDisconnectedClients());
+    }
+
+    @Test
+    public void ClientWithTooManyPendingEvents_Publish_ClientIsDisconnected() throws Exception {
+        var busy = new RecordingObserver(0);
+        var other = new RecordingObserver(0);
+        other.release.countDown();
+        _notifier.register("busy-user", busy);
+        _notifier.register("other-user", other);
+
+        _notifier.ordersPlaced(List.of(0));
+        assertTrue(busy.firstCall.await(5, TimeUnit.SECONDS));
+        for (var i = 1; i <= 101; i++) {
+            _notifier.ordersPlaced(List.of(i));
+        }
+        busy.release.countDown();
+        waitFor(() -> other.placed.stream().mapToInt(List::size).sum() == 102);
+
+        assertFalse(_notifier.isRegistered("busy-user"));
+        assertTrue(_notifier.isRegistered("other-user"));
+    }
+
+    @Test
+    public void FailingClient_Publish_ClientIsDisconnected() throws Exception {
+        var observer = new RecordingObserver(0) {
+            @Override
+            public void ordersCancelled(List<Integer> orderIds) throws RemoteException {
+                throw new RemoteException("Client is gone.");
+            }
+        };
+        _notifier.register("gone-user", observer);
+
+        _notifier.ordersCancelled(List.of(1));
+        waitFor(() -> !_notifier.isRegistered("gone-user"));
+
+        assertTrue(_notifier.register("gone-user", new RecordingObserver(0)));
+    }
+
+    @Test
+    public void FullDeliveryQueue_Publish_RejectedDeliveryIsRetriedWithoutAnotherEvent() throws Exception {
+        try (var notifier = new ClientNotifier(1, 1, 100, SLOW_THRESHOLD_MILLIS)) {
+            var release = new CountDownLatch(1);
+            var observers = List.of(new RecordingObserver(0, release), new RecordingObserver(0, release), new RecordingObserver(0, release));
+            for (var i = 0; i < observers.size(); i++) {
+                notifier.register("user-" + i, observers.get(i));
+            }
+
+            // One delivery runs and waits, one is queued, and the last one is rejected by the full queue.
+            notifier.ordersPlaced(List.of(1));
+            release.countDown();
+            waitFor(() -> notifier.getDeliveries() == 3);
+
+            assertTrue(observers.stream().allMatch(o -> o.placed.equals(List.of(List.of(1)))));
+            assertEquals(0, notifier.getDisconnectedClients());
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time.");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Records the calls it gets; every call waits for {@code release}, and then takes {@code delayMillis}.
+     */
+    private static class RecordingObserver implements IClientObserver {
+        private final long delayMillis;
+        private final CountDownLatch firstCall = new CountDownLatch(1);
+        private final CountDownLatch release;
+        private final List<List<Integer>> placed = new CopyOnWriteArrayList<>();
+
+        private RecordingObserver(long delayMillis) {
+            this(delayMillis, new CountDownLatch(1));
+        }
+
+        private RecordingObserver(long delayMillis, CountDownLatch release) {
+            this.delayMillis = delayMillis;
+            this.release = release;
+        }
+
+        @Override
+        public void ordersPlaced(List<Integer> orderIds) {
+            placed.add(new ArrayList<>(orderIds));
+            called();
+        }
+
+        @Override
+        public void ordersCompleted(List<Integer> orderIds) {
+            called();
+        }
+
+        @Override
+        public void ordersCancelled(List<Integer> orderIds) throws RemoteException {
+            called();
+        }
+
+        @Override
+        public void stockChanged(List<Integer> drugIds) {
+            called();
+        }
+
+        private void called() {
+            firstCall.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
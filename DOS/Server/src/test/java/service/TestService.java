@@ -1,6 +1,9 @@
 package service;
 
+import domain.dto.DrugDTO;
 import domain.dto.UserDTO;
+import domain.models.Drug;
+import domain.models.Order;
 import domain.models.User;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -13,7 +16,10 @@ import utils.TestConstants;
 import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -120,4 +126,86 @@ public class TestService {
         assertEquals(expectedDate.getMonth(), updatedUser.get().getNextPasswordChange().getMonth());
         assertEquals(expectedDate.getDay(), updatedUser.get().getNextPasswordChange().getDay());
     }
+
+    @Test
+    public void StoredUser_UpdateUserTwice_SecondUpdateUsesReturnedVersion() {
+        var user = new User.Builder()
+                .withUserName("test-user")
+                .withPassword("password")
+                .build();
+        _service.addUser(user);
+        var read = _userRepo.getById(user.getId()).orElseThrow();
+
+        read.setFirstName("first-update");
+        var updated = _service.updateUser(read);
+        updated.setFirstName("second-update");
+        var updatedAgain = _service.updateUser(updated);
+
+        assertNotNull(updatedAgain);
+        assertEquals(_userRepo.getById(user.getId()).orElseThrow().getVersion(), updatedAgain.getVersion());
+        assertEquals("second-update", _userRepo.getById(user.getId()).orElseThrow().getFirstName());
+    }
+
+    @Test
+    public void ChangesAfterVersion_GetChangesSince_ReturnsOnlyLaterChanges() {
+        var first = new Drug.Builder().withName("first-drug").build();
+        _drugRepo.add(first);
+        var version = _service.getChangesSince(0).getVersion();
+        var second = new Drug.Builder().withName("second-drug").build();
+        _drugRepo.add(second);
+        _drugRepo.delete(first.getId());
+
+        var changes = _service.getChangesSince(version);
+
+        assertEquals(version, changes.getSince());
+        assertEquals(List.of(second.getId()), changes.getChangedDrugs().stream().map(DrugDTO::getId).collect(Collectors.toList()));
+        assertEquals(List.of(first.getId()), changes.getDeletedDrugIds());
+        assertTrue(changes.getChangedOrders().isEmpty());
+        assertTrue(_service.getChangesSince(changes.getVersion()).isEmpty());
+    }
+
+    @Test
+    public void PlacedOrders_GetAvailableDrugs_SnapshotIsSharedUntilTheNextOrder() {
+        var drug = new Drug.Builder().withName("snapshot-drug").withInStock(10).build();
+        _drugRepo.add(drug);
+        _service.placeOrder(new Order.Builder().withDrugs(Map.of(drug.getId(), 2)).build());
+
+        var first = _service.getAvailableDrugs();
+        var second = _service.getAvailableDrugs();
+        _service.placeOrder(new Order.Builder().withDrugs(Map.of(drug.getId(), 3)).build());
+        var third = _service.getAvailableDrugs();
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+        assertEquals(8, stockOf(first, drug.getId()));
+        assertEquals(5, stockOf(third, drug.getId()));
+        assertThrows(UnsupportedOperationException.class, () -> third.remove(0));
+    }
+
+    @Test
+    public void ExportedCatalog_ImportDrugCatalog_CatalogIsRestored() {
+        _drugRepo.add(new Drug.Builder().withName("catalog-drug").withDescription("a, \"b\"").withInStock(7).build());
+
+        var csv = _service.exportDrugCatalog();
+        _drugRepo.clear();
+        var report = _service.importDrugCatalog(csv);
+
+        assertTrue(csv.startsWith(Constants.DRUG_CATALOG_HEADER));
+        assertEquals(1, report.getRowsImported());
+        assertEquals(7, _drugRepo.getAll().get(0).getInStock());
+    }
+
+    @Test
+    public void PathInsteadOfCatalog_ImportDrugCatalog_PathIsRejectedAsARowAndNoFileIsRead() {
+        var report = _service.importDrugCatalog("../../../etc/passwd");
+
+        assertEquals(1, report.getRowsRead());
+        assertEquals(0, report.getRowsImported());
+        assertEquals(1, report.getRowsRejected());
+        assertTrue(_drugRepo.getAll().isEmpty());
+    }
+
+    private static int stockOf(List<DrugDTO> drugs, int drugId) {
+        return drugs.stream().filter(d -> d.getId() == drugId).findFirst().orElseThrow().getInStock();
+    }
 }
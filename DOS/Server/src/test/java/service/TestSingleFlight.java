@@ -0,0 +1,120 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SingleFlight class.
+ */
+public class TestSingleFlight {
+    private static final int CALLERS = 50;
+
+    @Test
+    public void IdenticalConcurrentCalls_Call_RunOnceAndShareTheResult() throws Exception {
+        var singleFlight = new SingleFlight<String, Integer>();
+        var executions = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        var leader = CompletableFuture.supplyAsync(() -> singleFlight.join("orders", () -> {
+            await(release);
+            return executions.incrementAndGet();
+        }));
+        waitForFlight(singleFlight);
+
+        var followers = new ArrayList<CompletableFuture<Integer>>();
+        for (var i = 0; i < CALLERS; i++) {
+            followers.add(singleFlight.call("orders", executions::incrementAndGet));
+        }
+        release.countDown();
+
+        assertEquals(1, leader.get(5, TimeUnit.SECONDS));
+        for (var follower : followers) {
+            assertEquals(1, follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+        assertEquals(CALLERS + 1, singleFlight.getCalls());
+        assertEquals(1, singleFlight.getExecutions());
+        assertEquals(CALLERS, singleFlight.getDeduplicated());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    public void DifferentKeys_Call_EachRuns() throws Exception {
+        var singleFlight = new SingleFlight<String, String>();
+        var release = new CountDownLatch(1);
+        var running = CompletableFuture.supplyAsync(() -> singleFlight.join("first", () -> {
+            await(release);
+            return "first";
+        }));
+        waitForFlight(singleFlight);
+
+        var other = singleFlight.join("second", () -> "second");
+        release.countDown();
+
+        assertEquals("second", other);
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals(2, singleFlight.getExecutions());
+        assertEquals(0, singleFlight.getDeduplicated());
+    }
+
+    @Test
+    public void FinishedCall_Call_RunsAgain() {
+        var singleFlight = new SingleFlight<Long, Integer>();
+        var executions = new AtomicInteger();
+
+        var first = singleFlight.join(0L, executions::incrementAndGet);
+        var second = singleFlight.join(0L, executions::incrementAndGet);
+
+        assertEquals(1, first);
+        assertEquals(2, second);
+        assertEquals(0, singleFlight.getDeduplicated());
+    }
+
+    @Test
+    public void FailingCall_Join_EveryCallerGetsTheExceptionAndTheKeyIsFreed() throws Exception {
+        var singleFlight = new SingleFlight<String, Integer>();
+        var release = new CountDownLatch(1);
+        var leader = CompletableFuture.runAsync(() -> assertThrows(IllegalStateException.class,
+                () -> singleFlight.join("orders", () -> {
+                    await(release);
+                    throw new IllegalStateException("Database is locked.");
+                })));
+        waitForFlight(singleFlight);
+
+        var follower = CompletableFuture.runAsync(() -> assertThrows(IllegalStateException.class,
+                () -> singleFlight.join("orders", () -> 0)));
+        waitFor(() -> singleFlight.getDeduplicated() == 1);
+        release.countDown();
+        leader.get(5, TimeUnit.SECONDS);
+        follower.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, singleFlight.join("orders", () -> 1));
+    }
+
+    private static void waitForFlight(SingleFlight<?, ?> singleFlight) throws InterruptedException {
+        waitFor(() -> singleFlight.getInFlight() == 1);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time.");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SnapshotCache class.
+ */
+public class TestSnapshotCache {
+    private static final int READERS = 200;
+
+    @Test
+    public void ConcurrentReaders_Get_SnapshotIsLoadedOnce() throws Exception {
+        var loads = new AtomicInteger();
+        var cache = new SnapshotCache<>("test", () -> {
+            sleep(100);
+            return loads.incrementAndGet();
+        }, 0);
+        var executor = Executors.newFixedThreadPool(32);
+        var start = new CountDownLatch(1);
+
+        try {
+            var results = new ArrayList<Future<Integer>>();
+            for (var i = 0; i < READERS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get();
+                }));
+            }
+            start.countDown();
+
+            for (var result : results) {
+                assertEquals(1, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getLoads());
+        assertEquals(READERS - 1, cache.getHits() + cache.getDeduplicatedLoads());
+    }
+
+    @Test
+    public void LoadedSnapshot_Invalidate_NextGetLoadsAgain() {
+        var loads = new AtomicInteger();
+        var cache = new SnapshotCache<>("test", loads::incrementAndGet, 0);
+
+        var first = cache.get();
+        var cached = cache.get();
+        cache.invalidate();
+        var reloaded = cache.get();
+
+        assertEquals(1, first);
+        assertEquals(1, cached);
+        assertEquals(2, reloaded);
+    }
+
+    @Test
+    public void InvalidationDuringLoad_Get_OutdatedSnapshotIsNotServedAgain() {
+        var loads = new AtomicInteger();
+        var cache = new AtomicReference<SnapshotCache<Integer>>();
+        cache.set(new SnapshotCache<>("test", () -> {
+            var load = loads.incrementAndGet();
+            if (load == 1) {
+                // A write commits and invalidates the cache while the first load is still reading.
+                cache.get().invalidate();
+            }
+            return load;
+        }, 0));
+
+        var racing = cache.get().get();
+        var next = cache.get().get();
+        var cached = cache.get().get();
+
+        assertEquals(1, racing);
+        assertEquals(2, next);
+        assertEquals(2, cached);
+    }
+
+    @Test
+    public void ExpiredSnapshot_Get_SnapshotIsLoadedAgain() {
+        var loads = new AtomicInteger();
+        var cache = new SnapshotCache<>("test", loads::incrementAndGet, 50);
+
+        var first = cache.get();
+        sleep(100);
+        var expired = cache.get();
+
+        assertEquals(1, first);
+        assertEquals(2, expired);
+    }
+
+    @Test
+    public void FailingLoad_Get_NothingIsPublishedAndNextGetLoadsAgain() {
+        var loads = new AtomicInteger();
+        var cache = new SnapshotCache<>("test", () -> {
+            if (loads.incrementAndGet() == 2) {
+                throw new IllegalStateException("Database is locked.");
+            }
+            return loads.get();
+        }, 0);
+
+        var first = cache.get();
+        cache.invalidate();
+        var exception = assertThrows(IllegalStateException.class, cache::get);
+        var reloaded = cache.get();
+
+        assertEquals(1, first);
+        assertEquals("Database is locked.", exception.getMessage());
+        assertEquals(3, reloaded);
+        assertEquals(2, cache.getLoads());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}